@@ -0,0 +1,32 @@
+#!/usr/bin/env bash
+# Baut Fily mit Spring AOT (Profil faststart) und erzeugt ein AppCDS-Archiv per Trainingslauf.
+# Ergebnis: target/faststart/fily-*.jar + target/faststart/fily.jsa
+# Start: java -XX:SharedArchiveFile=target/faststart/fily.jsa -Dspring.aot.enabled=true \
+#             -jar target/faststart/fily-*.jar --spring.profiles.active=faststart
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+OUT="$ROOT/target/faststart"
+
+cd "$ROOT"
+./mvnw -B -q -Pfaststart -DskipTests clean package
+
+JAR="$(ls target/fily-*.jar | grep -v '\.original$' | head -n 1)"
+rm -rf "$OUT"
+# Entpacktes Layout: CDS kann Klassen aus verschachtelten Jars nicht archivieren
+java -Djarmode=tools -jar "$JAR" extract --destination "$OUT"
+
+# Trainingslauf in einem leeren Arbeitsverzeichnis: Kontext starten, nach dem Refresh beenden
+TRAIN="$(mktemp -d)"
+trap 'rm -rf "$TRAIN"' EXIT
+(
+    cd "$TRAIN"
+    java -XX:ArchiveClassesAtExit="$OUT/fily.jsa" \
+         -Dspring.context.exit=onRefresh \
+         -Dspring.aot.enabled=true \
+         -jar "$OUT/$(basename "$JAR")" \
+         --spring.profiles.active=faststart \
+         --fileserver.basedir="$TRAIN/files"
+)
+
+echo "CDS-Archiv: $OUT/fily.jsa"
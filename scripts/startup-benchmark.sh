@@ -0,0 +1,83 @@
+#!/usr/bin/env bash
+# Misst die Zeit vom JVM-Start bis zur ersten erfolgreichen Antwort (200) auf GET /api/files.
+# Verglichen werden der normale Start und das faststart-Profil mit AOT + CDS
+# (vorher scripts/build-faststart.sh ausführen).
+#
+#   scripts/startup-benchmark.sh [Durchläufe]     (Standard: 5)
+#
+# Alle Läufe verwenden dasselbe frische Arbeitsverzeichnis (Datenbank, Cache, Benutzerordner),
+# der erste, ungezählte Lauf legt Schema und Benutzer an und holt das Token.
+set -euo pipefail
+
+RUNS="${1:-5}"
+PORT="${PORT:-18080}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+OUT="$ROOT/target/faststart"
+JAR="$(ls "$ROOT"/target/fily-*.jar | grep -v '\.original$' | head -n 1)"
+FAST_JAR="$OUT/$(basename "$JAR")"
+BASE="http://localhost:$PORT"
+
+[ -f "$OUT/fily.jsa" ] || { echo "Fehlt: $OUT/fily.jsa (scripts/build-faststart.sh)"; exit 1; }
+
+WORK="$(mktemp -d)"
+PID=""
+cleanup() {
+    [ -n "$PID" ] && kill "$PID" 2>/dev/null || true
+    rm -rf "$WORK"
+}
+trap cleanup EXIT
+mkdir -p "$WORK/files"
+cd "$WORK"
+
+ARGS=(--server.port="$PORT" --fileserver.basedir="$WORK/files" --fily.watch.enabled=false)
+
+now_ms() { date +%s%3N; }
+
+stop() {
+    kill "$PID" 2>/dev/null || true
+    wait "$PID" 2>/dev/null || true
+    PID=""
+}
+
+# Startet einen Server und gibt die Millisekunden bis zur ersten erfolgreichen Listing-Antwort aus
+measure() {
+    local start
+    start="$(now_ms)"
+    "$@" "${ARGS[@]}" > "$WORK/server.log" 2>&1 &
+    PID=$!
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' -H "Authorization: Bearer $TOKEN" "$BASE/api/files")" = "200" ]; do
+        kill -0 "$PID" 2>/dev/null || { echo "Server beendet, siehe Log:" >&2; tail -n 40 "$WORK/server.log" >&2; exit 1; }
+        sleep 0.01
+    done
+    echo $(( $(now_ms) - start ))
+    stop
+}
+
+# Vorbereitung: Schema, Benutzer und Token anlegen
+java -jar "$JAR" "${ARGS[@]}" > "$WORK/server.log" 2>&1 &
+PID=$!
+until curl -s -o /dev/null "$BASE/api/public/users-exist"; do sleep 0.2; done
+curl -s -o /dev/null -H 'Content-Type: application/json' \
+     -d '{"username":"bench","password":"bench","isAdmin":false}' "$BASE/api/auth/register"
+TOKEN="$(curl -s -H 'Content-Type: application/json' \
+     -d '{"username":"bench","password":"bench"}' "$BASE/api/auth/login" | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')"
+[ -n "$TOKEN" ] || { echo "Login fehlgeschlagen"; exit 1; }
+mkdir -p "$WORK/files/bench"
+stop
+
+run() {
+    local name="$1"; shift
+    local total=0 ms
+    printf '%-10s' "$name"
+    for _ in $(seq "$RUNS"); do
+        ms="$(measure "$@")"
+        total=$(( total + ms ))
+        printf ' %6d' "$ms"
+    done
+    printf '   Mittel: %d ms\n' $(( total / RUNS ))
+}
+
+echo "Zeit bis zur ersten erfolgreichen GET /api/files-Antwort (ms), $RUNS Läufe"
+run default   java -jar "$JAR"
+run faststart java -XX:SharedArchiveFile="$OUT/fily.jsa" -Dspring.aot.enabled=true -jar "$FAST_JAR" \
+              --spring.profiles.active=faststart
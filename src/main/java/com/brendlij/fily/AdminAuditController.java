@@ -0,0 +1,49 @@
+package com.brendlij.fily;
+
+import com.brendlij.fily.model.AuditEvent;
+import com.brendlij.fily.repository.AuditEventRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/audit")
+@CrossOrigin
+public class AdminAuditController {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final AuditEventRepository auditEventRepository;
+
+    public AdminAuditController(AuditEventRepository auditEventRepository) {
+        this.auditEventRepository = auditEventRepository;
+    }
+
+    // Audit-Einträge, neueste zuerst; from/to in Millisekunden seit Epoch
+    @GetMapping
+    public Map<String, Object> search(@RequestParam(required = false) String user,
+                                      @RequestParam(required = false) String op,
+                                      @RequestParam(required = false) String path,
+                                      @RequestParam(defaultValue = "0") long from,
+                                      @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+                                      @RequestParam(defaultValue = "0") int page,
+                                      @RequestParam(defaultValue = "50") int size) {
+        PageRequest pageRequest = PageRequest.of(Math.max(0, page), Math.min(Math.max(1, size), MAX_PAGE_SIZE));
+        Slice<AuditEvent> slice = auditEventRepository.search(emptyToNull(user), emptyToNull(op),
+                emptyToNull(path), from, to, pageRequest);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("items", slice.getContent());
+        result.put("page", slice.getNumber());
+        result.put("size", slice.getSize());
+        result.put("hasMore", slice.hasNext());
+        return result;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,35 @@
+package com.brendlij.fily;
+
+import com.brendlij.fily.cache.ContentCache;
+import com.brendlij.fily.service.AuditLog;
+import com.brendlij.fily.service.PathLockManager;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/stats")
+@CrossOrigin
+public class AdminStatsController {
+
+    private final ContentCache contentCache;
+    private final PathLockManager pathLocks;
+    private final AuditLog auditLog;
+
+    public AdminStatsController(ContentCache contentCache, PathLockManager pathLocks, AuditLog auditLog) {
+        this.contentCache = contentCache;
+        this.pathLocks = pathLocks;
+        this.auditLog = auditLog;
+    }
+
+    // Laufzeit-Kennzahlen (Cache-Trefferquote usw.)
+    @GetMapping
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("contentCache", contentCache.stats());
+        stats.put("pathLocks", pathLocks.stats());
+        stats.put("audit", auditLog.stats());
+        return stats;
+    }
+}
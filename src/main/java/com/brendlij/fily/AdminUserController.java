@@ -1,8 +1,11 @@
 package com.brendlij.fily;
 
+import com.brendlij.fily.model.UserSummary;
 import com.brendlij.fily.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,10 +19,14 @@ public class AdminUserController {
 
     private static final Logger logger = LoggerFactory.getLogger(AdminUserController.class);
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final UserService userService;
+    private final int bulkMax;
 
-    public AdminUserController(UserService userService) {
+    public AdminUserController(UserService userService, @Value("${fily.users.bulk-max:1000}") int bulkMax) {
         this.userService = userService;
+        this.bulkMax = bulkMax;
     }
 
     // User erstellen
@@ -38,17 +45,31 @@ public class AdminUserController {
         else return ResponseEntity.status(400).body(Map.of("message", "User existiert bereits!"));
     }
 
-    // Alle User holen (ohne Passwörter)
+    // Viele User auf einmal anlegen; Ergebnis pro Eintrag in derselben Reihenfolge
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createUsers(@RequestBody List<UserService.ProvisionRequest> body) {
+        if (body == null || body.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Fehlende Daten!"));
+        }
+        if (body.size() > bulkMax) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Maximal " + bulkMax + " User pro Anfrage!"));
+        }
+        logger.info("AdminUserController: createUsers called for {} users", body.size());
+        return ResponseEntity.ok(userService.createUsers(body));
+    }
+
+    // User seitenweise holen (ohne Passwörter), optional nach Namenspräfix gefiltert;
+    // Gesamtzahl im Header X-Total-Count
     @GetMapping
-    public List<Map<String, Object>> listUsers() {
+    public ResponseEntity<List<UserSummary>> listUsers(@RequestParam(defaultValue = "") String q,
+                                                       @RequestParam(defaultValue = "0") int page,
+                                                       @RequestParam(defaultValue = "100") int size) {
         logger.info("AdminUserController: listUsers called");
-        return userService.findAllUsers().stream()
-                .map(user -> Map.<String, Object>of(
-                        "id", user.getId(),
-                        "username", user.getUsername(),
-                        "isAdmin", user.isAdmin()
-                ))
-                .toList();
+        Page<UserSummary> users = userService.listUsers(q, Math.max(0, page),
+                Math.min(Math.max(1, size), MAX_PAGE_SIZE));
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(users.getTotalElements()))
+                .body(users.getContent());
     }
 
     // User löschen
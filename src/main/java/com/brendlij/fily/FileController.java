@@ -1,12 +1,32 @@
 package com.brendlij.fily;
 
+import com.brendlij.fily.cache.ContentCache;
+import com.brendlij.fily.event.FileChangeEvent;
+import com.brendlij.fily.event.FileChangeEvent.Op;
+import com.brendlij.fily.security.AuditInterceptor;
 import com.brendlij.fily.security.JwtUtil;
+import com.brendlij.fily.service.ArchiveExtractService;
+import com.brendlij.fily.service.ChangeJournal;
+import com.brendlij.fily.service.CompressionService;
+import com.brendlij.fily.service.ContentIndexService;
+import com.brendlij.fily.service.DeltaSyncService;
+import com.brendlij.fily.service.DirectoryListing;
+import com.brendlij.fily.service.FileWatchService;
+import com.brendlij.fily.service.LiveUpdateService;
+import com.brendlij.fily.service.PathLockManager;
+import com.brendlij.fily.service.ShareLinkService;
+import com.brendlij.fily.service.ThumbnailService;
+import com.brendlij.fily.service.TieredStorageService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -15,10 +35,13 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.zip.*;
 
 @RestController
@@ -42,6 +65,44 @@ public class FileController {
     @Value("${fileserver.basedir}")
     private String baseDir;
 
+    private final ThumbnailService thumbnailService;
+    private final CompressionService compressionService;
+    private final ShareLinkService shareLinkService;
+    private final ChangeJournal changeJournal;
+    private final LiveUpdateService liveUpdateService;
+    private final DeltaSyncService deltaSyncService;
+    private final ContentIndexService contentIndexService;
+    private final ContentCache contentCache;
+    private final ArchiveExtractService archiveExtractService;
+    private final FileWatchService fileWatchService;
+    private final TieredStorageService tieredStorage;
+    private final PathLockManager pathLocks;
+    private final DirectoryListing directoryListing;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public FileController(ThumbnailService thumbnailService, CompressionService compressionService,
+                          ShareLinkService shareLinkService, ChangeJournal changeJournal,
+                          LiveUpdateService liveUpdateService, DeltaSyncService deltaSyncService,
+                          ContentIndexService contentIndexService, ContentCache contentCache,
+                          ArchiveExtractService archiveExtractService, FileWatchService fileWatchService,
+                          TieredStorageService tieredStorage, PathLockManager pathLocks,
+                          DirectoryListing directoryListing, ApplicationEventPublisher eventPublisher) {
+        this.thumbnailService = thumbnailService;
+        this.compressionService = compressionService;
+        this.shareLinkService = shareLinkService;
+        this.changeJournal = changeJournal;
+        this.liveUpdateService = liveUpdateService;
+        this.deltaSyncService = deltaSyncService;
+        this.contentIndexService = contentIndexService;
+        this.contentCache = contentCache;
+        this.archiveExtractService = archiveExtractService;
+        this.fileWatchService = fileWatchService;
+        this.tieredStorage = tieredStorage;
+        this.pathLocks = pathLocks;
+        this.directoryListing = directoryListing;
+        this.eventPublisher = eventPublisher;
+    }
+
     // Hilfsmethode: Hole den Benutzernamen aus dem Spring Security Context
     private String getCurrentUsername() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -77,19 +138,7 @@ public class FileController {
                 return ResponseEntity.status(404).body("Ordner nicht gefunden!");
             }
 
-            File[] files = folder.listFiles();
-            List<Map<String, Object>> result = new ArrayList<>();
-            if (files != null) {
-                for (File file : files) {
-                    Map<String, Object> entry = new HashMap<>();
-                    entry.put("name", file.getName());
-                    entry.put("isDirectory", file.isDirectory());
-                    entry.put("size", file.isFile() ? file.length() : null);
-                    entry.put("lastModified", file.lastModified());
-                    entry.put("path", currentPath.isEmpty() ? file.getName() : currentPath + "/" + file.getName());
-                    result.add(entry);
-                }
-            }
+            List<Map<String, Object>> result = directoryListing.list(folder, currentPath);
             logger.debug("Liste der Dateien für Benutzer {} im Pfad {}: {} Einträge", username, path, result.size());
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -101,23 +150,162 @@ public class FileController {
     @PostMapping("/upload")
     public ResponseEntity<?> uploadFile(
             @RequestParam("file") MultipartFile file,
-            @RequestParam(defaultValue = "") String path) {
+            @RequestParam(defaultValue = "") String path,
+            HttpServletRequest request) {
         try {
             String username = getCurrentUsername();
             File dir = safeFile(username, path);
             if (!dir.exists()) dir.mkdirs();
             File dest = new File(dir, file.getOriginalFilename());
-            file.transferTo(dest);
+            request.setAttribute(AuditInterceptor.PATH_ATTRIBUTE, relativePath(username, dest));
+            // Erst neben das Ziel schreiben, dann unter der Pfadsperre atomar umbenennen:
+            // Leser sehen nie eine halb geschriebene Datei, parallele Uploads nie ein Gemisch
+            Path tmp = dir.toPath().resolve(".fily-upload-" + UUID.randomUUID() + ".tmp");
+            boolean existed;
+            try {
+                file.transferTo(tmp);
+                try (PathLockManager.Handle lock = pathLocks.lockForWrite(dest)) {
+                    existed = dest.exists();
+                    Files.move(tmp, dest.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
             logger.info("Datei hochgeladen von Benutzer {}: {}", username, dest.getAbsolutePath());
+            eventPublisher.publishEvent(FileChangeEvent.of(username, existed ? Op.MODIFY : Op.CREATE,
+                    relativePath(username, dest), false));
+            thumbnailService.pregenerate(dest);
             return ResponseEntity.ok("OK");
+        } catch (PathLockManager.LockTimeoutException e) {
+            return lockBusy(e);
+        } catch (NoSuchFileException e) {
+            logger.warn("Upload-Ziel verschwunden: {}", e.getFile());
+            return ResponseEntity.status(409).body("Zielordner wurde inzwischen gelöscht oder verschoben!");
         } catch (Exception e) {
             logger.error("Fehler beim Datei-Upload", e);
             return ResponseEntity.status(500).body("Fehler beim Hochladen");
         }
     }
 
+    // Block-Signatur einer vorhandenen Datei für den Delta-Upload
+    @GetMapping("/delta/signature")
+    public ResponseEntity<Resource> deltaSignature(
+            @RequestParam String path,
+            @RequestParam(defaultValue = "0") int blockSize) {
+        try {
+            String username = getCurrentUsername();
+            File file = safeFile(username, path);
+            if (!file.isFile()) {
+                return ResponseEntity.notFound().build();
+            }
+            // Signaturen beziehen sich auf den unkomprimierten Inhalt
+            tieredStorage.rehydrate(file);
+            long lastModified = file.lastModified();
+            int size = DeltaSyncService.chooseBlockSize(file.length(), blockSize);
+            File signature = deltaSyncService.signature(file, size);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                    .header("X-Fily-Block-Size", String.valueOf(size))
+                    .header("X-Fily-Base-Modified", String.valueOf(lastModified))
+                    .body(new FileSystemResource(signature));
+        } catch (DeltaSyncService.DeltaException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            logger.error("Fehler bei Delta-Signatur", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    // Delta gegen die vorhandene Datei anwenden; baseModified aus der Signatur schützt vor
+    // zwischenzeitlichen Änderungen
+    @PostMapping(value = "/delta", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> applyDelta(
+            @RequestParam String path,
+            @RequestParam long baseModified,
+            HttpServletRequest request) {
+        try {
+            String username = getCurrentUsername();
+            File file = safeFile(username, path);
+            long size;
+            try (PathLockManager.Handle lock = pathLocks.lockForWrite(file)) {
+                if (!file.isFile()) {
+                    return ResponseEntity.status(404).body(Map.of("message", "Nicht gefunden!"));
+                }
+                if (file.lastModified() != baseModified) {
+                    return ResponseEntity.status(409).body(Map.of("message", "Datei wurde inzwischen geändert!"));
+                }
+                tieredStorage.rehydrate(file);
+                size = deltaSyncService.applyDelta(file, request.getInputStream());
+            }
+            logger.info("Delta-Upload von Benutzer {}: {} ({} Bytes, {} Bytes übertragen)",
+                    username, path, size, request.getContentLengthLong());
+            eventPublisher.publishEvent(FileChangeEvent.of(username, Op.MODIFY, relativePath(username, file), false));
+            return ResponseEntity.ok(Map.of("message", "OK", "size", size, "lastModified", file.lastModified()));
+        } catch (DeltaSyncService.DeltaException e) {
+            logger.warn("Delta-Upload abgelehnt: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (PathLockManager.LockTimeoutException e) {
+            return lockBusy(e);
+        } catch (Exception e) {
+            logger.error("Fehler beim Delta-Upload", e);
+            return ResponseEntity.status(500).body(Map.of("message", "Fehler beim Hochladen"));
+        }
+    }
+
+    // ZIP/TAR(.gz) als Request-Body hochladen und direkt in den Zielordner entpacken
+    @PostMapping("/upload-archive")
+    public ResponseEntity<?> uploadArchive(
+            @RequestParam(defaultValue = "") String path,
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) {
+        try {
+            String username = getCurrentUsername();
+            File dir = safeFile(username, path);
+            if (dir.exists() && !dir.isDirectory()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Ziel ist kein Ordner!"));
+            }
+            ArchiveExtractService.Format archiveFormat = null;
+            if (format != null && !format.isEmpty()) {
+                archiveFormat = ArchiveExtractService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+            }
+
+            Path userRoot = Paths.get(baseDir, username);
+            // Das (lange) Entpacken läuft ohne Sperre in einen Staging-Ordner; gesperrt wird der Zielordner
+            // nur fürs Einsortieren, damit andere Änderungen des Benutzers nicht minutenlang warten
+            ArchiveExtractService.Staged staged = archiveExtractService.stage(userRoot, dir.toPath(),
+                    request.getInputStream(), archiveFormat);
+            ArchiveExtractService.Result result;
+            try (PathLockManager.Handle lock = pathLocks.lockForWrite(dir)) {
+                fileWatchService.expectChanges(dir.toPath());
+                try {
+                    result = archiveExtractService.commit(staged, () -> fileWatchService.expectChanges(dir.toPath()));
+                } finally {
+                    // Ein Ereignis für den ganzen Ordner statt eines pro Datei (auch bei Abbruch, Teile sind einsortiert)
+                    eventPublisher.publishEvent(FileChangeEvent.of(username, Op.RESYNC, relativePath(username, dir), true));
+                }
+            } finally {
+                archiveExtractService.discard(staged);
+            }
+            logger.info("Archiv entpackt für Benutzer {} nach {}: {} Dateien, {} Bytes in {} ms",
+                    username, path, result.files(), result.bytes(), result.durationMs());
+            return ResponseEntity.ok(result);
+        } catch (ArchiveExtractService.ArchiveException e) {
+            logger.warn("Archiv abgelehnt: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Ungültige Parameter!"));
+        } catch (PathLockManager.LockTimeoutException e) {
+            return lockBusy(e);
+        } catch (Exception e) {
+            logger.error("Fehler beim Entpacken des Archivs", e);
+            return ResponseEntity.status(500).body(Map.of("message", "Fehler beim Hochladen"));
+        }
+    }
+
     @GetMapping("/download")
-    public ResponseEntity<Resource> downloadFile(@RequestParam String path) {
+    public ResponseEntity<Resource> downloadFile(
+            @RequestParam String path,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         try {
             String username = getCurrentUsername();
             File file = safeFile(username, path);
@@ -126,6 +314,16 @@ public class FileController {
                 return ResponseEntity.status(404).build();
             }
 
+            if (file.isFile()) {
+                tieredStorage.recordAccess(file);
+                TieredStorageService.TierEntry tier = tieredStorage.compressed(file);
+                if (tier != null) {
+                    logger.info("Datei-Download (komprimiert gespeichert) für Benutzer {}: {}", username, file.getName());
+                    return tieredResponse(file, tier, "application/octet-stream", acceptEncoding,
+                            ContentCache.etag(file.lastModified(), tier.logicalSize()));
+                }
+            }
+
             Resource resource = file.isDirectory()
                     ? new UrlResource(createZipFromDirectory(file).toURI())
                     : new UrlResource(file.toURI());
@@ -147,48 +345,68 @@ public class FileController {
     }
 
     @GetMapping("/view")
-    public ResponseEntity<Resource> viewFileInline(@RequestParam String path) {
+    public ResponseEntity<Resource> viewFileInline(
+            @RequestParam String path,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             String username = getCurrentUsername();
             File file = safeFile(username, path);
 
+            // Kleine, oft abgerufene Dateien direkt aus dem Speicher
+            ContentCache.Entry cached = contentCache.get(file);
+            if (cached != null) {
+                return cachedResponse(file, cached, ifNoneMatch);
+            }
+
             if (!file.exists()) {
                 return ResponseEntity.notFound().build();
             }
 
-            Resource resource = new UrlResource(file.toURI());
+            String contentType = resolveContentType(file);
 
-            String contentType = Files.probeContentType(file.toPath());
-            if (contentType == null) {
-                String ext = "";
-                int i = file.getName().lastIndexOf('.');
-                if (i > 0) {
-                    ext = file.getName().substring(i + 1).toLowerCase();
+            // Gleiches ETag auf allen Wegen (Cache, Tiering, vorkomprimiert, roh): mtime + logische Größe
+            String etag = null;
+            if (file.isFile()) {
+                tieredStorage.recordAccess(file);
+                TieredStorageService.TierEntry tier = tieredStorage.compressed(file);
+                etag = ContentCache.etag(file.lastModified(), tier != null ? tier.logicalSize() : file.length());
+                if (etagMatches(ifNoneMatch, etag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                }
+                if (tier != null) {
+                    return tieredResponse(file, tier, contentType, acceptEncoding, etag);
                 }
-                switch (ext) {
-                    case "pdf": contentType = "application/pdf"; break;
-                    case "png": contentType = "image/png"; break;
-                    case "jpg":
-                    case "jpeg": contentType = "image/jpeg"; break;
-                    case "gif": contentType = "image/gif"; break;
-                    case "bmp": contentType = "image/bmp"; break;
-                    case "svg": contentType = "image/svg+xml"; break;
-                    case "txt": contentType = "text/plain"; break;
-                    case "json": contentType = "application/json"; break;
-                    case "csv": contentType = "text/csv"; break;
-                    case "html":
-                    case "htm": contentType = "text/html"; break;
-                    case "md": contentType = "text/markdown"; break;
-                    case "mp4": contentType = "video/mp4"; break;
-                    case "avi": contentType = "video/x-msvideo"; break;
-                    case "mov": contentType = "video/quicktime"; break;
-                    default: contentType = "application/octet-stream"; break;
+            }
+
+            if (file.isFile() && !compressionService.isPrecompressCandidate(file, contentType)) {
+                ContentCache.Entry loaded = contentCache.load(file, contentType);
+                if (loaded != null) {
+                    return cachedResponse(file, loaded, ifNoneMatch);
                 }
             }
 
+            // Große Textdateien: vorkomprimierte Variante aus dem Cache ausliefern
+            CompressionService.Encoding encoding = CompressionService.negotiate(acceptEncoding);
+            if (encoding != null && file.isFile() && CompressionService.isCompressible(contentType)) {
+                File variant = compressionService.getPrecompressed(file, encoding);
+                if (variant != null) {
+                    return ResponseEntity.ok()
+                            .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getName() + "\"")
+                            .header(HttpHeaders.CONTENT_TYPE, contentType)
+                            .header(HttpHeaders.CONTENT_ENCODING, encoding.getToken())
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                            .eTag(weak(etag))
+                            .body(new FileSystemResource(variant));
+                }
+            }
+
+            Resource resource = new UrlResource(file.toURI());
+
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getName() + "\"")
                     .header(HttpHeaders.CONTENT_TYPE, contentType)
+                    .eTag(etag)
                     .body(resource);
 
         } catch (Exception e) {
@@ -197,23 +415,152 @@ public class FileController {
         }
     }
 
+    @GetMapping("/thumbnail")
+    public ResponseEntity<byte[]> thumbnail(
+            @RequestParam String path,
+            @RequestParam(defaultValue = "256") int size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            String username = getCurrentUsername();
+            File file = safeFile(username, path);
+            if (!file.isFile()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!ThumbnailService.isSupported(file)) {
+                return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+            }
+
+            // ETag aus mtime + Größenstufe: Browser kann ohne Neuberechnung revalidieren
+            String etag = "\"" + file.lastModified() + "-" + ThumbnailService.normalizeSize(size) + "\"";
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            byte[] thumbnail = thumbnailService.getThumbnail(file, size);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .eTag(etag)
+                    .body(thumbnail);
+
+        } catch (RejectedExecutionException | TimeoutException e) {
+            logger.warn("Thumbnail-Pool ausgelastet: {}", path);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            logger.error("Fehler beim Erzeugen des Thumbnails", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Freigabelink erstellen (Gültigkeit in Sekunden, maxDownloads=0 -> unbegrenzt)
+    @PostMapping("/share")
+    public ResponseEntity<?> createShareLink(
+            @RequestParam String path,
+            @RequestParam(defaultValue = "604800") long expiresIn,
+            @RequestParam(defaultValue = "0") int maxDownloads) {
+        try {
+            String username = getCurrentUsername();
+            File file = safeFile(username, path);
+            if (!file.exists()) {
+                return ResponseEntity.status(404).body(Map.of("message", "Nicht gefunden!"));
+            }
+            if (expiresIn <= 0 || expiresIn > 30L * 24 * 3600 || maxDownloads < 0 || path.contains("\n")) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Ungültige Parameter!"));
+            }
+
+            long expiresAt = System.currentTimeMillis() / 1000 + expiresIn;
+            String token = shareLinkService.createToken(username, path, expiresAt, maxDownloads);
+            logger.info("Freigabelink erstellt für Benutzer {}: {} (bis {}, max {})", username, path, expiresAt, maxDownloads);
+            return ResponseEntity.ok(Map.of(
+                    "token", token,
+                    "url", "/api/share/" + token,
+                    "expiresAt", expiresAt,
+                    "isDirectory", file.isDirectory()));
+        } catch (Exception e) {
+            logger.error("Fehler beim Erstellen des Freigabelinks", e);
+            return ResponseEntity.status(500).body(Map.of("message", "Interner Serverfehler"));
+        }
+    }
+
+    // Delta-Sync: alle Änderungen nach der Sequenznummer "since"
+    @GetMapping("/changes")
+    public ResponseEntity<?> listChanges(
+            @RequestParam long since,
+            @RequestParam(defaultValue = "1000") int limit) {
+        try {
+            String username = getCurrentUsername();
+            ChangeJournal.ChangeSet changes = changeJournal.changesSince(username, since, Math.max(1, Math.min(limit, 10000)));
+            if (changes.resync()) {
+                logger.info("Journal für Benutzer {} ab {} nicht mehr vorhanden, Resync nötig", username, since);
+            }
+            return ResponseEntity.ok(changes);
+        } catch (Exception e) {
+            logger.error("Fehler bei listChanges", e);
+            return ResponseEntity.status(500).body("Interner Serverfehler");
+        }
+    }
+
+    // Live-Updates für die angezeigten Ordner (Server-Sent Events)
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeEvents(@RequestParam(defaultValue = "") List<String> path) {
+        try {
+            String username = getCurrentUsername();
+            for (String p : path) safeFile(username, p);
+            SseEmitter emitter = liveUpdateService.subscribe(username, path);
+            if (emitter == null) {
+                logger.warn("Zu viele SSE-Verbindungen für Benutzer {}", username);
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+            }
+            return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Fehler bei subscribeEvents", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    // Volltextsuche in Textdateien des Benutzers
+    @GetMapping("/search/content")
+    public ResponseEntity<?> searchContent(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            String username = getCurrentUsername();
+            long start = System.nanoTime();
+            List<ContentIndexService.Hit> hits = contentIndexService.search(username, q, Math.max(1, Math.min(limit, 100)));
+            logger.debug("Volltextsuche für Benutzer {} nach '{}': {} Treffer in {} µs", username, q, hits.size(),
+                    (System.nanoTime() - start) / 1000);
+            return ResponseEntity.ok(hits);
+        } catch (Exception e) {
+            logger.error("Fehler bei der Volltextsuche", e);
+            return ResponseEntity.status(500).body("Interner Serverfehler");
+        }
+    }
+
     @PostMapping("/mkdir")
     public ResponseEntity<?> makeDir(@RequestParam String path) {
         try {
             String username = getCurrentUsername();
             File dir = safeFile(username, path);
-            if (dir.exists()) {
-                logger.warn("Verzeichnis existiert bereits für Benutzer {}: {}", username, path);
-                return ResponseEntity.status(400).body("Ordner existiert schon!");
+            boolean created;
+            try (PathLockManager.Handle lock = pathLocks.lockForWrite(dir)) {
+                if (dir.exists()) {
+                    logger.warn("Verzeichnis existiert bereits für Benutzer {}: {}", username, path);
+                    return ResponseEntity.status(400).body("Ordner existiert schon!");
+                }
+                created = dir.mkdirs();
             }
-            boolean created = dir.mkdirs();
             if (created) {
                 logger.info("Verzeichnis erstellt für Benutzer {}: {}", username, path);
+                eventPublisher.publishEvent(FileChangeEvent.of(username, Op.MKDIR, relativePath(username, dir), true));
                 return ResponseEntity.ok("Ordner erstellt: " + path);
             } else {
                 logger.error("Fehler beim Erstellen des Ordners für Benutzer {}: {}", username, path);
                 return ResponseEntity.status(500).body("Fehler beim Erstellen!");
             }
+        } catch (PathLockManager.LockTimeoutException e) {
+            return lockBusy(e);
         } catch (Exception e) {
             logger.error("Fehler beim Erstellen des Ordners", e);
             return ResponseEntity.status(500).body("Interner Serverfehler");
@@ -225,18 +572,26 @@ public class FileController {
         try {
             String username = getCurrentUsername();
             File file = safeFile(username, path);
-            if (!file.exists()) {
-                logger.warn("Löschen: Datei/Ordner nicht gefunden für Benutzer {}: {}", username, path);
-                return ResponseEntity.status(404).body("Nicht gefunden!");
+            boolean directory;
+            boolean deleted;
+            try (PathLockManager.Handle lock = pathLocks.lockForWrite(file)) {
+                if (!file.exists()) {
+                    logger.warn("Löschen: Datei/Ordner nicht gefunden für Benutzer {}: {}", username, path);
+                    return ResponseEntity.status(404).body("Nicht gefunden!");
+                }
+                directory = file.isDirectory();
+                deleted = deleteDirRecursive(file);
             }
-            boolean deleted = deleteDirRecursive(file);
             if (deleted) {
                 logger.info("Datei/Ordner gelöscht für Benutzer {}: {}", username, path);
+                eventPublisher.publishEvent(FileChangeEvent.of(username, Op.DELETE, relativePath(username, file), directory));
                 return ResponseEntity.ok("Gelöscht: " + path);
             } else {
                 logger.error("Fehler beim Löschen für Benutzer {}: {}", username, path);
                 return ResponseEntity.status(500).body("Fehler beim Löschen!");
             }
+        } catch (PathLockManager.LockTimeoutException e) {
+            return lockBusy(e);
         } catch (Exception e) {
             logger.error("Fehler beim Löschen", e);
             return ResponseEntity.status(500).body("Interner Serverfehler");
@@ -248,23 +603,30 @@ public class FileController {
         try {
             String username = getCurrentUsername();
             File oldFile = safeFile(username, oldPath);
-            if (!oldFile.exists()) {
-                logger.warn("Umbenennen: Datei nicht gefunden für Benutzer {}: {}", username, oldPath);
-                return ResponseEntity.status(404).body("Nicht gefunden!");
-            }
             if (newName.contains("..") || newName.contains("/") || newName.contains("\\")) {
                 logger.warn("Umbenennen: Ungültiger neuer Name {} für Benutzer {}", newName, username);
                 return ResponseEntity.status(400).body("Ungültiger Name!");
             }
             File newFile = new File(oldFile.getParentFile(), newName);
-            boolean renamed = oldFile.renameTo(newFile);
+            boolean renamed;
+            try (PathLockManager.Handle lock = pathLocks.lockForWrite(oldFile, newFile)) {
+                if (!oldFile.exists()) {
+                    logger.warn("Umbenennen: Datei nicht gefunden für Benutzer {}: {}", username, oldPath);
+                    return ResponseEntity.status(404).body("Nicht gefunden!");
+                }
+                renamed = oldFile.renameTo(newFile);
+            }
             if (renamed) {
                 logger.info("Datei umbenannt für Benutzer {}: {} -> {}", username, oldPath, newName);
+                eventPublisher.publishEvent(FileChangeEvent.moved(username, Op.RENAME,
+                        relativePath(username, oldFile), relativePath(username, newFile), newFile.isDirectory()));
                 return ResponseEntity.ok("Umbenannt!");
             } else {
                 logger.error("Fehler beim Umbenennen für Benutzer {}: {} -> {}", username, oldPath, newName);
                 return ResponseEntity.status(500).body("Fehler beim Umbenennen!");
             }
+        } catch (PathLockManager.LockTimeoutException e) {
+            return lockBusy(e);
         } catch (Exception e) {
             logger.error("Fehler beim Umbenennen", e);
             return ResponseEntity.status(500).body("Interner Serverfehler");
@@ -273,39 +635,48 @@ public class FileController {
 
     // Move-Endpoint (einfach zu FileController hinzufügen)
     @PostMapping("/move")
-    public ResponseEntity<?> moveFile(@RequestBody MoveFileRequest request) {
+    public ResponseEntity<?> moveFile(@RequestBody MoveFileRequest request, HttpServletRequest httpRequest) {
         try {
             String username = getCurrentUsername();
+            httpRequest.setAttribute(AuditInterceptor.PATH_ATTRIBUTE, request.getSource());
+            httpRequest.setAttribute(AuditInterceptor.TARGET_ATTRIBUTE, request.getTarget());
 
             // Source und Target (beide relativ zum User-Ordner!)
             File sourceFile = safeFile(username, request.getSource());
             File targetFile = safeFile(username, request.getTarget());
 
-            // Existiert die Quelldatei?
-            if (!sourceFile.exists()) {
-                return ResponseEntity.status(404)
-                        .body(Collections.singletonMap("error", "Quelle nicht gefunden!"));
-            }
+            boolean ok;
+            try (PathLockManager.Handle lock = pathLocks.lockForWrite(sourceFile, targetFile)) {
+                // Existiert die Quelldatei?
+                if (!sourceFile.exists()) {
+                    return ResponseEntity.status(404)
+                            .body(Collections.singletonMap("error", "Quelle nicht gefunden!"));
+                }
 
-            // Zielverzeichnis anlegen, falls nötig
-            File targetDir = targetFile.getParentFile();
-            if (!targetDir.exists()) {
-                if (!targetDir.mkdirs()) {
-                    return ResponseEntity.status(500)
-                            .body(Collections.singletonMap("error", "Zielordner konnte nicht erstellt werden!"));
+                // Zielverzeichnis anlegen, falls nötig
+                File targetDir = targetFile.getParentFile();
+                if (!targetDir.exists()) {
+                    if (!targetDir.mkdirs()) {
+                        return ResponseEntity.status(500)
+                                .body(Collections.singletonMap("error", "Zielordner konnte nicht erstellt werden!"));
+                    }
                 }
-            }
 
-            // Verschieben!
-            boolean ok = sourceFile.renameTo(targetFile);
+                // Verschieben!
+                ok = sourceFile.renameTo(targetFile);
+            }
             if (ok) {
                 logger.info("Datei/Ordner verschoben von {} nach {} für {}", sourceFile, targetFile, username);
+                eventPublisher.publishEvent(FileChangeEvent.moved(username, Op.MOVE,
+                        relativePath(username, sourceFile), relativePath(username, targetFile), targetFile.isDirectory()));
                 return ResponseEntity.ok(Collections.singletonMap("message", "Verschoben!"));
             } else {
                 logger.error("Verschieben fehlgeschlagen: {} -> {} für {}", sourceFile, targetFile, username);
                 return ResponseEntity.status(500)
                         .body(Collections.singletonMap("error", "Verschieben fehlgeschlagen!"));
             }
+        } catch (PathLockManager.LockTimeoutException e) {
+            return lockBusy(e);
         } catch (Exception e) {
             logger.error("Fehler beim Verschieben", e);
             return ResponseEntity.status(500)
@@ -316,6 +687,96 @@ public class FileController {
 
     // --- Hilfsfunktionen ---
 
+    private ResponseEntity<?> lockBusy(PathLockManager.LockTimeoutException e) {
+        logger.warn("Pfadsperre nicht erhalten: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", e.getMessage()));
+    }
+
+    // Komprimiert abgelegte Datei: gzip direkt durchreichen, sonst beim Senden entpacken
+    private ResponseEntity<Resource> tieredResponse(File file, TieredStorageService.TierEntry tier,
+                                                    String contentType, String acceptEncoding,
+                                                    String etag) throws IOException {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getName() + "\"")
+                .header(HttpHeaders.CONTENT_TYPE, contentType)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (CompressionService.negotiate(acceptEncoding) == CompressionService.Encoding.GZIP) {
+            return builder
+                    .header(HttpHeaders.CONTENT_ENCODING, CompressionService.Encoding.GZIP.getToken())
+                    .eTag(weak(etag))
+                    .body(new FileSystemResource(file));
+        }
+        return builder
+                .contentLength(tier.logicalSize())
+                .eTag(etag)
+                .body(new InputStreamResource(tieredStorage.openLogical(file)));
+    }
+
+    // Kodierte Varianten (gzip/deflate) bekommen das ETag der Datei als schwaches ETag
+    private static String weak(String etag) {
+        return "W/" + etag;
+    }
+
+    // If-None-Match vergleicht schwach (W/ zählt nicht), auch Listen und "*"
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private ResponseEntity<Resource> cachedResponse(File file, ContentCache.Entry entry, String ifNoneMatch) {
+        if (etagMatches(ifNoneMatch, entry.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.etag()).build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getName() + "\"")
+                .header(HttpHeaders.CONTENT_TYPE, entry.contentType())
+                .eTag(entry.etag())
+                .body(entry.asResource(file.getName()));
+    }
+
+    // Pfad relativ zum Benutzerordner, mit '/' getrennt (für Events/Journal)
+    private String relativePath(String username, File file) {
+        Path userRoot = Paths.get(baseDir, username).toAbsolutePath().normalize();
+        return userRoot.relativize(file.toPath().toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    private String resolveContentType(File file) throws IOException {
+        String contentType = Files.probeContentType(file.toPath());
+        if (contentType != null) return contentType;
+
+        String ext = "";
+        int i = file.getName().lastIndexOf('.');
+        if (i > 0) {
+            ext = file.getName().substring(i + 1).toLowerCase();
+        }
+        switch (ext) {
+            case "pdf": return "application/pdf";
+            case "png": return "image/png";
+            case "jpg":
+            case "jpeg": return "image/jpeg";
+            case "gif": return "image/gif";
+            case "bmp": return "image/bmp";
+            case "svg": return "image/svg+xml";
+            case "txt": return "text/plain";
+            case "json": return "application/json";
+            case "csv": return "text/csv";
+            case "html":
+            case "htm": return "text/html";
+            case "md": return "text/markdown";
+            case "mp4": return "video/mp4";
+            case "avi": return "video/x-msvideo";
+            case "mov": return "video/quicktime";
+            default: return "application/octet-stream";
+        }
+    }
+
     private boolean deleteDirRecursive(File dir) {
         File[] allContents = dir.listFiles();
         if (allContents != null) {
@@ -338,7 +799,7 @@ public class FileController {
                 zipDirectory(file, parentFolder + "/" + file.getName(), zos);
             } else {
                 zos.putNextEntry(new ZipEntry(parentFolder + "/" + file.getName()));
-                try (FileInputStream fis = new FileInputStream(file)) {
+                try (InputStream fis = tieredStorage.openLogical(file)) {
                     byte[] buffer = new byte[1024];
                     int length;
                     while ((length = fis.read(buffer)) > 0) {
@@ -20,7 +20,7 @@ public class PublicController {
 
     @GetMapping("/users-exist")
     public boolean usersExist() {
-        boolean exist = !userService.findAllUsers().isEmpty();
+        boolean exist = userService.usersExist();
         logger.info("usersExist called, result: {}", exist);
         return exist;
     }
@@ -0,0 +1,228 @@
+package com.brendlij.fily.cache;
+
+import com.brendlij.fily.event.FileChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hält kleine, oft angefragte Dateien samt Content-Type und ETag im Speicher (LRU, Obergrenze in Bytes).
+// Aufgenommen wird erst beim zweiten Fehlgriff, damit einmalige Abrufe den Cache nicht verdrängen.
+@Component
+public class ContentCache {
+
+    public record Entry(ByteBuffer data, String contentType, String etag, long lastModified) {
+
+        public long length() {
+            return data.remaining();
+        }
+
+        public AbstractResource asResource(String filename) {
+            ByteBuffer buffer = data.duplicate();
+            return new AbstractResource() {
+                @Override
+                public String getDescription() {
+                    return "cached content [" + filename + "]";
+                }
+
+                @Override
+                public String getFilename() {
+                    return filename;
+                }
+
+                @Override
+                public long contentLength() {
+                    return buffer.remaining();
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteBufferInputStream(buffer.duplicate());
+                }
+            };
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final boolean offHeap;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // Schlüssel, die einmal verfehlt wurden (begrenzt, älteste fallen raus)
+    private final LinkedHashMap<String, Boolean> seenOnce;
+    private long totalBytes;
+
+    @Value("${fileserver.basedir}")
+    private String baseDir;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admissions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ContentCache(@Value("${fily.content-cache.max-bytes:67108864}") long maxBytes,
+                        @Value("${fily.content-cache.max-entry-bytes:524288}") long maxEntryBytes,
+                        @Value("${fily.content-cache.off-heap:false}") boolean offHeap,
+                        @Value("${fily.content-cache.doorkeeper-size:10000}") int doorkeeperSize) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.offHeap = offHeap;
+        this.seenOnce = new LinkedHashMap<>(256, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > doorkeeperSize;
+            }
+        };
+    }
+
+    // Treffer nur, wenn mtime und Größe noch passen (ein stat statt Öffnen + probeContentType)
+    public Entry get(File file) {
+        String key = file.getAbsolutePath();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.lastModified() == file.lastModified() && entry.length() == file.length()) {
+            hits.increment();
+            return entry;
+        }
+        if (entry != null) invalidate(key);
+        misses.increment();
+        return null;
+    }
+
+    // Nach einem Fehlgriff: Datei laden, falls klein genug und schon einmal angefragt
+    public Entry load(File file, String contentType) throws IOException {
+        long length = file.length();
+        if (length > maxEntryBytes) return null;
+        String key = file.getAbsolutePath();
+        synchronized (this) {
+            if (seenOnce.remove(key) == null) {
+                seenOnce.put(key, Boolean.TRUE);
+                return null;
+            }
+        }
+
+        long lastModified = file.lastModified();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (file.lastModified() != lastModified || bytes.length != file.length()) return null;
+
+        ByteBuffer data;
+        if (offHeap) {
+            data = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        } else {
+            data = ByteBuffer.wrap(bytes);
+        }
+        Entry entry = new Entry(data.asReadOnlyBuffer(), contentType, etag(lastModified, bytes.length), lastModified);
+
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) totalBytes -= previous.length();
+            totalBytes += entry.length();
+            admissions.increment();
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                totalBytes -= it.next().getValue().length();
+                it.remove();
+                evictions.increment();
+            }
+        }
+        return entry;
+    }
+
+    @EventListener
+    public void onChange(FileChangeEvent event) {
+        invalidatePrefix(absolutePath(event.username(), event.path()));
+        if (event.targetPath() != null) {
+            invalidatePrefix(absolutePath(event.username(), event.targetPath()));
+        }
+    }
+
+    public void invalidate(String absolutePath) {
+        synchronized (this) {
+            Entry removed = entries.remove(absolutePath);
+            if (removed != null) {
+                totalBytes -= removed.length();
+                invalidations.increment();
+            }
+        }
+    }
+
+    // Alles unterhalb eines Pfads entfernen (gelöschte/verschobene Ordner)
+    public void invalidatePrefix(String absolutePath) {
+        String prefix = absolutePath.endsWith(File.separator) ? absolutePath : absolutePath + File.separator;
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                if (e.getKey().equals(absolutePath) || e.getKey().startsWith(prefix)) {
+                    totalBytes -= e.getValue().length();
+                    it.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    private String absolutePath(String username, String path) {
+        return Paths.get(baseDir, username, path).normalize().toFile().getAbsolutePath();
+    }
+
+    public static String etag(long lastModified, long length) {
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("offHeap", offHeap);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("admissions", admissions.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,136 @@
+package com.brendlij.fily.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Einfacher Datei-Cache auf der Platte: Schlüssel -> Datei, LRU mit Obergrenze in Bytes
+public class DiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+
+    @FunctionalInterface
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+    // accessOrder=true -> älteste Einträge stehen vorne
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public DiskCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+
+        // Vorhandene Einträge übernehmen, ältester Zugriff zuerst
+        List<File> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(Path::toFile)
+                    .filter(File::isFile)
+                    .forEach(f -> {
+                        if (f.getName().endsWith(".tmp")) f.delete();
+                        else existing.add(f);
+                    });
+        }
+        existing.sort(Comparator.comparingLong(File::lastModified));
+        for (File f : existing) {
+            entries.put(f.getName(), f.length());
+            totalBytes += f.length();
+        }
+        evictIfNeeded();
+        logger.info("DiskCache {} geladen: {} Einträge, {} Bytes", dir, entries.size(), totalBytes);
+    }
+
+    // Schlüssel aus beliebigen Teilen (z.B. Pfad + mtime + Größe) als SHA-256-Hex
+    public static String key(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Liefert die Cache-Datei oder null, wenn nicht vorhanden
+    public File get(String key) {
+        synchronized (this) {
+            if (entries.get(key) == null) return null;
+        }
+        File file = dir.resolve(key).toFile();
+        if (!file.isFile()) {
+            remove(key);
+            return null;
+        }
+        return file;
+    }
+
+    // Schreibt einen Eintrag über eine temporäre Datei und ersetzt ihn atomar
+    public File put(String key, Writer writer) throws IOException {
+        Path target = dir.resolve(key);
+        Path tmp = dir.resolve(key + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                writer.write(out);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        long size = Files.size(target);
+        synchronized (this) {
+            Long previous = entries.put(key, size);
+            if (previous != null) totalBytes -= previous;
+            totalBytes += size;
+            evictIfNeeded();
+        }
+        return target.toFile();
+    }
+
+    public void remove(String key) {
+        synchronized (this) {
+            Long previous = entries.remove(key);
+            if (previous != null) totalBytes -= previous;
+        }
+        try {
+            Files.deleteIfExists(dir.resolve(key));
+        } catch (IOException e) {
+            logger.warn("Cache-Eintrag konnte nicht gelöscht werden: {}", key, e);
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            if (!dir.resolve(eldest.getKey()).toFile().delete()) {
+                logger.debug("Cache-Datei bereits entfernt: {}", eldest.getKey());
+            }
+        }
+    }
+}
@@ -24,6 +24,8 @@ public class CorsGlobalConfig {
         config.setAllowedOrigins(Arrays.asList(allowedOrigins));
         config.addAllowedHeader("*");
         config.addAllowedMethod("*");
+        // Gesamtzahl der seitenweisen User-Liste (AdminUserController.listUsers)
+        config.addExposedHeader("X-Total-Count");
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/api/**", config);
@@ -0,0 +1,52 @@
+package com.brendlij.fily.config;
+
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.Profiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+// Im faststart-Profil läuft Hibernate ohne Schema-Abgleich. Fehlt die H2-Datei noch (erster Start)
+// oder wird es ausdrücklich verlangt, wird ddl-auto hier wieder auf "update" gesetzt.
+public class FastStartEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String PROFILE = "faststart";
+    private static final String H2_FILE_PREFIX = "jdbc:h2:file:";
+
+    private final Log logger;
+
+    public FastStartEnvironmentPostProcessor(DeferredLogFactory logFactory) {
+        this.logger = logFactory.getLog(FastStartEnvironmentPostProcessor.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.acceptsProfiles(Profiles.of(PROFILE))) return;
+
+        boolean forced = environment.getProperty("fily.faststart.schema-update", Boolean.class, false);
+        Path dbFile = h2DatabaseFile(environment.getProperty("spring.datasource.url", ""));
+        if (!forced && (dbFile == null || Files.exists(dbFile))) return;
+
+        environment.getPropertySources().addFirst(new MapPropertySource("filyFastStartSchema",
+                Map.of("spring.jpa.hibernate.ddl-auto", "update")));
+        logger.info(forced ? "Schnellstart: Schema-Update erzwungen"
+                : "Schnellstart: keine Datenbank unter " + dbFile + ", Schema wird angelegt");
+    }
+
+    // jdbc:h2:file:./data/filydb;OPTION=... -> ./data/filydb.mv.db (null für andere Datenbanken)
+    private static Path h2DatabaseFile(String url) {
+        if (!url.startsWith(H2_FILE_PREFIX)) return null;
+        String path = url.substring(H2_FILE_PREFIX.length());
+        int options = path.indexOf(';');
+        if (options >= 0) path = path.substring(0, options);
+        if (path.startsWith("~")) path = System.getProperty("user.home") + path.substring(1);
+        return Paths.get(path + ".mv.db");
+    }
+}
@@ -33,7 +33,7 @@ public class SecurityConfig {
                 .cors(withDefaults()) // <---- DAS HIER EINBAUEN!
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/auth/**", "/h2-console/**", "/api/public/**").permitAll()
+                        .requestMatchers("/api/auth/**", "/h2-console/**", "/api/public/**", "/api/share/**").permitAll()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
@@ -0,0 +1,24 @@
+package com.brendlij.fily.config;
+
+import com.brendlij.fily.security.AuditInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final AuditInterceptor auditInterceptor;
+
+    public WebMvcConfig(AuditInterceptor auditInterceptor) {
+        this.auditInterceptor = auditInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // SSE-Stream läuft beliebig lange und ist keine Dateioperation
+        registry.addInterceptor(auditInterceptor)
+                .addPathPatterns("/api/files/**", "/api/files")
+                .excludePathPatterns("/api/files/events");
+    }
+}
@@ -0,0 +1,21 @@
+package com.brendlij.fily.event;
+
+// Änderung im Dateibaum eines Benutzers. Pfade sind relativ zum Benutzerordner und mit '/' getrennt.
+// external=true: vom Dateisystem-Watcher erkannt, nicht über die API ausgelöst.
+public record FileChangeEvent(String username, Op op, String path, String targetPath,
+                              boolean directory, boolean external) {
+
+    public enum Op {
+        CREATE, MODIFY, MKDIR, RENAME, MOVE, DELETE,
+        // Watcher hat Ereignisse verloren (Overflow): Pfad muss neu gelistet werden
+        RESYNC
+    }
+
+    public static FileChangeEvent of(String username, Op op, String path, boolean directory) {
+        return new FileChangeEvent(username, op, path, null, directory, false);
+    }
+
+    public static FileChangeEvent moved(String username, Op op, String path, String targetPath, boolean directory) {
+        return new FileChangeEvent(username, op, path, targetPath, directory, false);
+    }
+}
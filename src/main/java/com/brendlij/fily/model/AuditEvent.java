@@ -0,0 +1,81 @@
+package com.brendlij.fily.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// Wird nur gelesen; geschrieben wird gebündelt per JDBC im AuditLog (IDENTITY-Spalte, keine Sequenz)
+@Entity
+@Table(name = "audit_events", indexes = {
+        @Index(name = "idx_audit_user_time", columnList = "username, occurred_at"),
+        @Index(name = "idx_audit_time", columnList = "occurred_at")
+})
+public class AuditEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "occurred_at", nullable = false)
+    private long occurredAt;
+
+    @Column(nullable = false, length = 100)
+    private String username;
+
+    @Column(nullable = false, length = 50)
+    private String op;
+
+    @Column(length = 1024)
+    private String path;
+
+    @Column(name = "target_path", length = 1024)
+    private String targetPath;
+
+    @Column(nullable = false)
+    private long bytes;
+
+    @Column(name = "duration_micros", nullable = false)
+    private long durationMicros;
+
+    @Column(nullable = false)
+    private int status;
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getOccurredAt() {
+        return occurredAt;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getTargetPath() {
+        return targetPath;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,5 @@
+package com.brendlij.fily.model;
+
+// Projektion für Admin-Listen: nur die Spalten, die angezeigt werden (kein Passwort-Hash)
+public record UserSummary(Long id, String username, boolean isAdmin) {
+}
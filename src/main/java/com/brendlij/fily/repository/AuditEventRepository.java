@@ -0,0 +1,25 @@
+package com.brendlij.fily.repository;
+
+import com.brendlij.fily.model.AuditEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AuditEventRepository extends JpaRepository<AuditEvent, Long> {
+
+    // Slice statt Page: kein count(*) über die ganze Tabelle pro Seite
+    @Query("select e from AuditEvent e"
+            + " where (:username is null or e.username = :username)"
+            + " and (:op is null or e.op = :op)"
+            + " and (:pathPrefix is null or e.path like concat(:pathPrefix, '%'))"
+            + " and e.occurredAt >= :from and e.occurredAt < :to"
+            + " order by e.id desc")
+    Slice<AuditEvent> search(@Param("username") String username,
+                             @Param("op") String op,
+                             @Param("pathPrefix") String pathPrefix,
+                             @Param("from") long from,
+                             @Param("to") long to,
+                             Pageable pageable);
+}
@@ -1,10 +1,33 @@
 package com.brendlij.fily.repository;
 
 import com.brendlij.fily.model.User;
+import com.brendlij.fily.model.UserSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    // "Gibt es überhaupt User?" ohne die Tabelle zu laden
+    boolean existsByIdNotNull();
+
+    @Query(value = "select new com.brendlij.fily.model.UserSummary(u.id, u.username, u.isAdmin) from User u",
+            countQuery = "select count(u) from User u")
+    Page<UserSummary> findSummaries(Pageable pageable);
+
+    // Präfixsuche, nutzt den Index der Unique-Spalte username
+    @Query(value = "select new com.brendlij.fily.model.UserSummary(u.id, u.username, u.isAdmin) from User u"
+            + " where u.username like concat(:prefix, '%') escape '\\'",
+            countQuery = "select count(u) from User u where u.username like concat(:prefix, '%') escape '\\'")
+    Page<UserSummary> findSummariesByPrefix(@Param("prefix") String prefix, Pageable pageable);
+
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
 }
@@ -0,0 +1,75 @@
+package com.brendlij.fily.security;
+
+import com.brendlij.fily.service.AuditLog;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// Erfasst jede Anfrage unter /api/files/** für den Audit-Trail (registriert in WebMvcConfig).
+// Pfade kommen aus den Request-Parametern; Endpoints mit JSON-Body setzen sie als Request-Attribut.
+@Component
+public class AuditInterceptor implements HandlerInterceptor {
+
+    public static final String PATH_ATTRIBUTE = AuditInterceptor.class.getName() + ".path";
+    public static final String TARGET_ATTRIBUTE = AuditInterceptor.class.getName() + ".target";
+    private static final String START_ATTRIBUTE = AuditInterceptor.class.getName() + ".start";
+    private static final int MAX_PATH_LENGTH = 1024;
+
+    private final AuditLog auditLog;
+    private final boolean includeReads;
+
+    public AuditInterceptor(AuditLog auditLog, @Value("${fily.audit.include-reads:false}") boolean includeReads) {
+        this.auditLog = auditLog;
+        this.includeReads = includeReads;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod && (includeReads || !"GET".equals(request.getMethod()))) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start == null) return;
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) return;
+
+        long durationMicros = (System.nanoTime() - (Long) start) / 1000;
+        String path = attributeOrParam(request, PATH_ATTRIBUTE, request.getParameter("oldPath") != null ? "oldPath" : "path");
+        String target = attributeOrParam(request, TARGET_ATTRIBUTE, "newName");
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+
+        auditLog.record(new AuditLog.Record(System.currentTimeMillis(), auth.getName(),
+                ((HandlerMethod) handler).getMethod().getName(), truncate(path), truncate(target),
+                Math.max(request.getContentLengthLong(), responseLength(response)), durationMicros, status));
+    }
+
+    private static String attributeOrParam(HttpServletRequest request, String attribute, String param) {
+        Object value = request.getAttribute(attribute);
+        return value != null ? value.toString() : request.getParameter(param);
+    }
+
+    private static long responseLength(HttpServletResponse response) {
+        String length = response.getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (length == null) return -1;
+        try {
+            return Long.parseLong(length);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String truncate(String value) {
+        return value == null || value.length() <= MAX_PATH_LENGTH ? value : value.substring(0, MAX_PATH_LENGTH);
+    }
+}
@@ -31,6 +31,12 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserService userService;
 
+    // Freigabelinks werden vom ShareLinkFilter ohne JWT bedient
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + ShareLinkFilter.PREFIX);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
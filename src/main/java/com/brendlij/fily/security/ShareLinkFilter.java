@@ -0,0 +1,132 @@
+package com.brendlij.fily.security;
+
+import com.brendlij.fily.service.DirectoryListing;
+import com.brendlij.fily.service.ShareLinkService;
+import com.brendlij.fily.service.ShareLinkService.ShareLink;
+import com.brendlij.fily.service.TieredStorageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Bedient /api/share/{token} komplett selbst, noch vor der Security-Chain:
+// kein JWT-Parsing, kein DB-Lookup, nur HMAC-Prüfung.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ShareLinkFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShareLinkFilter.class);
+
+    public static final String PREFIX = "/api/share/";
+
+    private final ShareLinkService shareLinkService;
+    private final TieredStorageService tieredStorage;
+    private final DirectoryListing directoryListing;
+    private final ObjectMapper objectMapper;
+
+    public ShareLinkFilter(ShareLinkService shareLinkService, TieredStorageService tieredStorage,
+                           DirectoryListing directoryListing, ObjectMapper objectMapper) {
+        this.shareLinkService = shareLinkService;
+        this.tieredStorage = tieredStorage;
+        this.directoryListing = directoryListing;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String method = request.getMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        String token = request.getRequestURI().substring(request.getContextPath().length() + PREFIX.length());
+        ShareLink link = shareLinkService.verify(token);
+        if (link == null) {
+            logger.debug("Ungültiger oder abgelaufener Freigabelink");
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        File file;
+        try {
+            file = shareLinkService.resolve(link, request.getParameter("path"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (!file.exists()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        if (file.isDirectory()) {
+            writeListing(file, request.getParameter("path"), response);
+            return;
+        }
+
+        String etag = "\"" + Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length()) + "\"";
+        long maxAge = Math.max(0, link.expiresAt() - System.currentTimeMillis() / 1000);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (link.isLimited()) {
+            // Mit Download-Limit darf kein Proxy zwischenspeichern, sonst zählt der Server nichts
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-store");
+        } else {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAge + ", immutable");
+        }
+
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH)) && !link.isLimited()) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (method.equals("GET") && !shareLinkService.tryConsumeDownload(link)) {
+            logger.info("Download-Limit erreicht für Freigabe {} von {}", link.id(), link.username());
+            response.sendError(HttpServletResponse.SC_GONE);
+            return;
+        }
+
+        MediaType contentType = MediaTypeFactory.getMediaType(file.getName()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentType(contentType.toString());
+        response.setContentLengthLong(tieredStorage.logicalSize(file));
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + file.getName().replace("\"", "") + "\"");
+        if (method.equals("GET")) {
+            tieredStorage.recordAccess(file);
+            try (InputStream in = tieredStorage.openLogical(file)) {
+                in.transferTo(response.getOutputStream());
+            }
+        }
+    }
+
+    private void writeListing(File folder, String subPath, HttpServletResponse response) throws IOException {
+        List<Map<String, Object>> result = directoryListing.list(folder, subPath == null ? "" : subPath);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        objectMapper.writeValue(response.getOutputStream(), result);
+    }
+}
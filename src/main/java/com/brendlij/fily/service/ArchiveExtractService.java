@@ -0,0 +1,473 @@
+package com.brendlij.fily.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Entpackt ZIP- oder (ggf. gzip-komprimierte) TAR-Streams direkt aus dem Request in einen Zielordner,
+// ohne das Archiv zwischenzuspeichern. Kleine Dateien werden parallel geschrieben. Entpackt wird erst in
+// einen Staging-Ordner, der danach in einem schnellen Schritt einsortiert wird (siehe stage/commit).
+@Service
+public class ArchiveExtractService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveExtractService.class);
+
+    public enum Format { ZIP, TAR }
+
+    public static class ArchiveException extends IOException {
+        public ArchiveException(String message) {
+            super(message);
+        }
+    }
+
+    public record Result(int files, int directories, long bytes, List<String> skipped, int skippedCount,
+                         long durationMs) {
+    }
+
+    // Fertig entpacktes Archiv im Staging-Ordner, noch nicht im Zielordner
+    public record Staged(Path staging, Path target, int files, long bytes, List<String> skipped, int skippedCount,
+                         long startNanos) {
+    }
+
+    // Ein Eintrag im Archiv; data liefert den Inhalt (nur bis zum nächsten Eintrag gültig)
+    private record ArchiveEntry(String name, boolean directory, long size, InputStream data) {
+    }
+
+    private interface EntryReader {
+        ArchiveEntry next() throws IOException;
+    }
+
+    // Abgelehnte Einträge: nur die ersten paar (gekürzt) landen in der Antwort
+    private static final int MAX_REPORTED_SKIPPED = 100;
+    private static final int MAX_REPORTED_NAME = 256;
+
+    private final int maxEntries;
+    private final long maxTotalBytes;
+    private final long maxEntryBytes;
+    private final int parallelThreshold;
+    private final long maxBytesInFlight;
+    private final ExecutorService writers;
+
+    public ArchiveExtractService(@Value("${fily.archive.max-entries:100000}") int maxEntries,
+                                 @Value("${fily.archive.max-total-bytes:10737418240}") long maxTotalBytes,
+                                 @Value("${fily.archive.max-entry-bytes:4294967296}") long maxEntryBytes,
+                                 @Value("${fily.archive.parallel-threshold-bytes:1048576}") int parallelThreshold,
+                                 @Value("${fily.archive.max-bytes-in-flight:67108864}") long maxBytesInFlight,
+                                 @Value("${fily.archive.writer-threads:4}") int writerThreads) {
+        this.maxEntries = maxEntries;
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.parallelThreshold = parallelThreshold;
+        this.maxBytesInFlight = maxBytesInFlight;
+        this.writers = Executors.newFixedThreadPool(writerThreads, r -> {
+            Thread t = new Thread(r, "fily-archive-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    // Entpacken und direkt einsortieren (ohne Sperre zwischen den Schritten)
+    public Result extract(Path userRoot, Path targetDir, InputStream rawIn, Format format, Runnable progress)
+            throws IOException, InterruptedException {
+        Staged staged = stage(userRoot, targetDir, rawIn, format);
+        try {
+            return commit(staged, progress);
+        } finally {
+            discard(staged);
+        }
+    }
+
+    // Schritt 1: in einen Staging-Ordner (.fily-extract-*) im Benutzerordner entpacken. Das kann bei großen
+    // Archiven Minuten dauern und braucht keine Pfadsperre; der Watcher ignoriert den Ordner.
+    public Staged stage(Path userRoot, Path targetDir, InputStream rawIn, Format format)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Path root = userRoot.toAbsolutePath().normalize();
+        Path target = targetDir.toAbsolutePath().normalize();
+        if (!target.startsWith(root)) throw new ArchiveException("Ungültiger Zielordner");
+        Files.createDirectories(root);
+        Path staging = Files.createDirectory(root.resolve(DirectoryListing.INTERNAL_PREFIX + "extract-" + UUID.randomUUID()));
+
+        BufferedInputStream in = new BufferedInputStream(rawIn, 64 * 1024);
+        Set<Path> knownDirs = new HashSet<>();
+        Set<Path> written = new HashSet<>();
+        List<String> skipped = new ArrayList<>();
+        List<Future<?>> pending = new ArrayList<>();
+        Semaphore inFlight = new Semaphore((int) Math.min(Integer.MAX_VALUE, maxBytesInFlight));
+        int skippedCount = 0;
+        int files = 0;
+        int entries = 0;
+        long total = 0;
+
+        knownDirs.add(staging);
+        try {
+            EntryReader reader = openReader(in, format);
+            ArchiveEntry entry;
+            while ((entry = reader.next()) != null) {
+                if (++entries > maxEntries) {
+                    throw new ArchiveException("Zu viele Einträge im Archiv (max. " + maxEntries + ")");
+                }
+
+                Path dest = resolveEntry(staging, entry.name());
+                if (dest == null) {
+                    logger.warn("Archiv-Eintrag abgelehnt: {}", entry.name());
+                    if (skipped.size() < MAX_REPORTED_SKIPPED) skipped.add(shorten(entry.name()));
+                    skippedCount++;
+                    continue;
+                }
+                if (entry.directory()) {
+                    ensureDir(dest, staging, knownDirs, written, entry.name());
+                    continue;
+                }
+                ensureDir(dest.getParent(), staging, knownDirs, written, entry.name());
+                if (knownDirs.contains(dest) || !written.add(dest)) {
+                    throw new ArchiveException("Doppelter Eintrag im Archiv: " + shorten(entry.name()));
+                }
+
+                long remainingTotal = maxTotalBytes - total;
+                long limit = Math.min(maxEntryBytes, remainingTotal);
+                byte[] small = null;
+                byte[] head = null;
+                if (entry.size() >= 0 && entry.size() <= parallelThreshold && entry.size() <= limit) {
+                    small = entry.data().readNBytes((int) entry.size() + 1);
+                    if (small.length > entry.size()) throw new ArchiveException("Eintragsgröße stimmt nicht: " + entry.name());
+                } else if (entry.size() < 0) {
+                    // Gestreamte ZIPs (Data Descriptor) nennen keine Größe: bis zur Schwelle puffern
+                    int max = (int) Math.min(parallelThreshold, limit);
+                    byte[] buffered = entry.data().readNBytes(max + 1);
+                    if (buffered.length <= max) small = buffered;
+                    else head = buffered;
+                }
+                if (small != null) {
+                    // Kleine Datei: im Speicher, parallel schreiben
+                    byte[] data = small;
+                    total += data.length;
+                    int permits = Math.max(1, data.length);
+                    inFlight.acquire(permits);
+                    pending.add(writers.submit(() -> {
+                        try {
+                            Files.write(dest, data);
+                        } finally {
+                            inFlight.release(permits);
+                        }
+                        return null;
+                    }));
+                } else {
+                    // Große Datei: direkt streamen und dabei mitzählen
+                    total += copyLimited(head, entry.data(), dest, limit, entry.name());
+                }
+                files++;
+                if (total > maxTotalBytes) {
+                    throw new ArchiveException("Archiv zu groß (max. " + maxTotalBytes + " Bytes)");
+                }
+                if (pending.size() >= 1024) drain(pending);
+            }
+            drain(pending);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            for (Future<?> f : pending) f.cancel(true);
+            deleteTree(staging);
+            throw e;
+        }
+        return new Staged(staging, target, files, total, skipped, skippedCount, start);
+    }
+
+    // Schritt 2: Inhalt des Staging-Ordners per rename in den Zielordner einsortieren (schnell, unter der
+    // Pfadsperre des Aufrufers). Vorhandene Dateien werden ersetzt, Datei/Ordner-Konflikte abgelehnt.
+    public Result commit(Staged staged, Runnable progress) throws IOException {
+        Path staging = staged.staging();
+        Path target = staged.target();
+        int[] directories = {createTarget(target)};
+        int[] moved = {0};
+        Files.walkFileTree(staging, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                    throws IOException {
+                if (dir.equals(staging)) return FileVisitResult.CONTINUE;
+                Path dest = target.resolve(staging.relativize(dir));
+                if (Files.isDirectory(dest, LinkOption.NOFOLLOW_LINKS)) return FileVisitResult.CONTINUE;
+                if (Files.exists(dest, LinkOption.NOFOLLOW_LINKS)) throw conflict(staging.relativize(dir));
+                Files.createDirectory(dest);
+                directories[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                    throws IOException {
+                Path dest = target.resolve(staging.relativize(file));
+                if (Files.isDirectory(dest, LinkOption.NOFOLLOW_LINKS)) throw conflict(staging.relativize(file));
+                try {
+                    Files.move(file, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(file, dest, StandardCopyOption.REPLACE_EXISTING);
+                }
+                if (++moved[0] % 500 == 0 && progress != null) progress.run();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - staged.startNanos());
+        return new Result(staged.files(), directories[0], staged.bytes(), staged.skipped(), staged.skippedCount(),
+                durationMs);
+    }
+
+    // Reste des Staging-Ordners entfernen (nach commit oder bei Abbruch)
+    public void discard(Staged staged) {
+        deleteTree(staged.staging());
+    }
+
+    private static Format detect(byte[] head) {
+        if (head.length >= 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4) return Format.ZIP;
+        return Format.TAR;
+    }
+
+    private EntryReader openReader(BufferedInputStream in, Format format) throws IOException {
+        in.mark(4);
+        byte[] head = in.readNBytes(4);
+        in.reset();
+        if (format == null) format = detect(head);
+        if (format == Format.ZIP) {
+            ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+            return () -> {
+                ZipEntry e = zip.getNextEntry();
+                return e == null ? null : new ArchiveEntry(e.getName(), e.isDirectory(), e.getSize(), zip);
+            };
+        }
+        InputStream tarIn = in;
+        if (head.length >= 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b) {
+            tarIn = new BufferedInputStream(new GZIPInputStream(in, 64 * 1024), 64 * 1024);
+        }
+        return new TarReader(tarIn);
+    }
+
+    // Wie safeFile: kein "..", keine absoluten Pfade, Ziel muss im Staging-Ordner liegen
+    private static Path resolveEntry(Path base, String name) {
+        String normalized = name.replace('\\', '/');
+        if (normalized.isEmpty() || normalized.startsWith("/") || normalized.contains("..")
+                || normalized.indexOf(':') >= 0 || normalized.indexOf('\0') >= 0) {
+            return null;
+        }
+        Path dest;
+        try {
+            dest = base.resolve(normalized).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (!dest.startsWith(base) || dest.equals(base)) return null;
+        return dest;
+    }
+
+    // Legt dir samt fehlender Elternordner unterhalb von base an; eine Datei im Weg ist ein Konflikt
+    private static void ensureDir(Path dir, Path base, Set<Path> knownDirs, Set<Path> written, String name)
+            throws IOException {
+        Deque<Path> missing = new ArrayDeque<>();
+        for (Path p = dir; p.startsWith(base) && !knownDirs.contains(p); p = p.getParent()) {
+            if (written.contains(p) || Files.exists(p, LinkOption.NOFOLLOW_LINKS)) {
+                throw new ArchiveException("Namenskonflikt im Archiv: " + shorten(name));
+            }
+            missing.push(p);
+        }
+        for (Path p : missing) { // oberster Ordner zuerst
+            Files.createDirectory(p);
+            knownDirs.add(p);
+        }
+    }
+
+    // Zielordner samt fehlender Elternordner anlegen; liefert die Zahl neu angelegter Ordner
+    private static int createTarget(Path target) throws IOException {
+        Deque<Path> missing = new ArrayDeque<>();
+        for (Path p = target; !Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS); p = p.getParent()) {
+            if (Files.exists(p, LinkOption.NOFOLLOW_LINKS)) throw new ArchiveException("Ziel ist kein Ordner");
+            missing.push(p);
+        }
+        for (Path p : missing) Files.createDirectory(p);
+        return missing.size();
+    }
+
+    private static ArchiveException conflict(Path relative) {
+        return new ArchiveException("Namenskonflikt beim Entpacken: " + relative.toString().replace('\\', '/'));
+    }
+
+    private static String shorten(String name) {
+        return name.length() <= MAX_REPORTED_NAME ? name : name.substring(0, MAX_REPORTED_NAME) + "…";
+    }
+
+    private static void deleteTree(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    logger.debug("Staging-Rest nicht löschbar: {}", p, e);
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // schon weg
+        } catch (IOException e) {
+            logger.warn("Staging-Ordner konnte nicht gelöscht werden: {}", dir, e);
+        }
+    }
+
+    // head: bereits gelesener Anfang des Eintrags (oder null)
+    private static long copyLimited(byte[] head, InputStream in, Path dest, long limit, String name) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long copied = 0;
+        try (OutputStream out = Files.newOutputStream(dest)) {
+            if (head != null) {
+                copied = head.length;
+                if (copied > limit) throw new ArchiveException("Eintrag zu groß: " + name);
+                out.write(head);
+            }
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                copied += n;
+                if (copied > limit) throw new ArchiveException("Eintrag zu groß: " + name);
+                out.write(buffer, 0, n);
+            }
+        }
+        return copied;
+    }
+
+    private static void drain(List<Future<?>> pending) throws IOException, InterruptedException {
+        for (Future<?> f : pending) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                throw new IOException(e.getCause());
+            }
+        }
+        pending.clear();
+    }
+
+    // Minimaler TAR-Leser (ustar, GNU-Langnamen, PAX-"path"). Links und Sonderdateien werden übersprungen.
+    private static final class TarReader implements EntryReader {
+        private final InputStream in;
+        private long remaining;
+        private long padding;
+
+        TarReader(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public ArchiveEntry next() throws IOException {
+            String longName = null;
+            while (true) {
+                skipFully(remaining + padding);
+                byte[] header = in.readNBytes(512);
+                if (header.length < 512 || isZero(header)) return null;
+
+                String name = string(header, 0, 100);
+                long size = octal(header, 124, 12);
+                char type = (char) header[156];
+                String prefix = string(header, 345, 155);
+                if (!prefix.isEmpty() && string(header, 257, 6).startsWith("ustar")) name = prefix + "/" + name;
+                remaining = size;
+                padding = (512 - size % 512) % 512;
+
+                if (type == 'L' || type == 'x') {
+                    if (size > 64 * 1024) throw new ArchiveException("Ungültiger TAR-Header");
+                    byte[] data = in.readNBytes((int) size);
+                    remaining = 0;
+                    if (type == 'L') {
+                        longName = string(data, 0, data.length);
+                    } else {
+                        String paxPath = paxPath(data);
+                        if (paxPath != null) longName = paxPath;
+                    }
+                    continue;
+                }
+                if (longName != null) {
+                    name = longName;
+                    longName = null;
+                }
+                if (type == '5') {
+                    return new ArchiveEntry(name, true, 0, InputStream.nullInputStream());
+                }
+                if (type == '0' || type == '\0' || type == '7') {
+                    return new ArchiveEntry(name, false, size, new EntryStream());
+                }
+                // Symlinks, Hardlinks, Geräte usw. nicht übernehmen
+            }
+        }
+
+        private final class EntryStream extends InputStream {
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) return -1;
+                int b = in.read();
+                if (b >= 0) remaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) return -1;
+                int n = in.read(b, off, (int) Math.min(len, remaining));
+                if (n > 0) remaining -= n;
+                return n;
+            }
+        }
+
+        private void skipFully(long n) throws IOException {
+            in.skipNBytes(n);
+            remaining = 0;
+            padding = 0;
+        }
+
+        private static boolean isZero(byte[] block) {
+            for (byte b : block) if (b != 0) return false;
+            return true;
+        }
+
+        private static String string(byte[] buf, int off, int len) {
+            int end = off;
+            while (end < off + len && buf[end] != 0) end++;
+            return new String(buf, off, end - off, StandardCharsets.UTF_8);
+        }
+
+        private static long octal(byte[] buf, int off, int len) throws ArchiveException {
+            long value = 0;
+            for (int i = off; i < off + len; i++) {
+                byte b = buf[i];
+                if (b == 0 || b == ' ') {
+                    if (value > 0) break;
+                    continue;
+                }
+                if (b < '0' || b > '7') throw new ArchiveException("Ungültiger TAR-Header");
+                value = (value << 3) + (b - '0');
+            }
+            return value;
+        }
+
+        // PAX-Records: "<len> key=value\n"
+        private static String paxPath(byte[] data) {
+            String text = new String(data, StandardCharsets.UTF_8);
+            for (String record : text.split("\n")) {
+                int space = record.indexOf(' ');
+                if (space > 0 && record.startsWith("path=", space + 1)) {
+                    return record.substring(space + 6);
+                }
+            }
+            return null;
+        }
+    }
+}
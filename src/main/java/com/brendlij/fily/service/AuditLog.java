@@ -0,0 +1,151 @@
+package com.brendlij.fily.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Audit-Trail der Dateioperationen. Request-Threads legen Einträge nur in einen lock-freien
+// Ringpuffer (MpscRingBuffer); ein Hintergrund-Thread schreibt sie gebündelt
+// per JDBC-Batch in audit_events. Ist der Puffer voll, wird der Eintrag verworfen und gezählt.
+@Service
+public class AuditLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final String INSERT_SQL = "insert into audit_events"
+            + " (occurred_at, username, op, path, target_path, bytes, duration_micros, status)"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    public record Record(long occurredAt, String username, String op, String path, String targetPath,
+                         long bytes, long durationMicros, int status) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long idleNanos;
+    private final long retentionMillis;
+
+    private final MpscRingBuffer<Record> buffer;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public AuditLog(JdbcTemplate jdbcTemplate,
+                    @Value("${fily.audit.enabled:true}") boolean enabled,
+                    @Value("${fily.audit.buffer-size:65536}") int bufferSize,
+                    @Value("${fily.audit.batch-size:500}") int batchSize,
+                    @Value("${fily.audit.flush-interval-ms:200}") long flushIntervalMillis,
+                    @Value("${fily.audit.retention-days:90}") long retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.buffer = new MpscRingBuffer<>(Math.max(1024, bufferSize));
+        this.batchSize = Math.max(1, batchSize);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.retentionMillis = TimeUnit.DAYS.toMillis(retentionDays);
+
+        this.writer = new Thread(this::run, "fily-audit-writer");
+        this.writer.setDaemon(true);
+    }
+
+    // Erst nach dem Start (Hibernate ist dann fertig): Tabelle sicherstellen, dann schreiben.
+    // Bestehende Datenbanken von vor dem Audit-Trail bekommen sie so auch ohne ddl-auto=update.
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || writer.isAlive()) return;
+        try {
+            new ResourceDatabasePopulator(new ClassPathResource("db/audit_events.sql"))
+                    .execute(jdbcTemplate.getDataSource());
+        } catch (Exception e) {
+            logger.error("Audit: Tabelle audit_events konnte nicht angelegt werden", e);
+        }
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    // Hot Path: ein CAS und ein Array-Schreibzugriff, blockiert nie
+    public boolean record(Record record) {
+        return enabled && buffer.offer(record);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queued", buffer.size());
+        stats.put("capacity", buffer.capacity());
+        stats.put("written", written.sum());
+        stats.put("dropped", buffer.dropped());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    @Scheduled(cron = "${fily.audit.retention-cron:0 15 4 * * *}")
+    public void purgeExpired() {
+        if (!enabled || retentionMillis <= 0) return;
+        try {
+            int removed = jdbcTemplate.update("delete from audit_events where occurred_at < ?",
+                    System.currentTimeMillis() - retentionMillis);
+            if (removed > 0) logger.info("Audit: {} alte Einträge gelöscht", removed);
+        } catch (Exception e) {
+            logger.warn("Audit: Aufräumen fehlgeschlagen", e);
+        }
+    }
+
+    private void run() {
+        List<Record> batch = new ArrayList<>(batchSize);
+        while (true) {
+            buffer.drain(batch, batchSize);
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+                continue;
+            }
+            if (!running) return;
+            LockSupport.parkNanos(idleNanos);
+        }
+    }
+
+    private void write(List<Record> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, r) -> {
+                ps.setLong(1, r.occurredAt());
+                ps.setString(2, r.username());
+                ps.setString(3, r.op());
+                ps.setString(4, r.path());
+                ps.setString(5, r.targetPath());
+                ps.setLong(6, r.bytes());
+                ps.setLong(7, r.durationMicros());
+                ps.setInt(8, r.status());
+            });
+            written.add(batch.size());
+        } catch (Exception e) {
+            // Kein Wiederholen: der Audit-Trail darf den Server nicht aufhalten
+            failed.add(batch.size());
+            logger.warn("Audit: {} Einträge konnten nicht geschrieben werden: {}", batch.size(), e.getMessage());
+        }
+    }
+}
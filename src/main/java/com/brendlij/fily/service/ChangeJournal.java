@@ -0,0 +1,288 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.event.FileChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Append-only Änderungsjournal pro Benutzer (data/journal/<user>.log) mit fortlaufenden Sequenznummern.
+// Die erste Zeile "#floor=N" gibt an, bis zu welcher Nummer bereits kompaktiert wurde.
+@Service
+public class ChangeJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeJournal.class);
+
+    public record Entry(long seq, long timestamp, FileChangeEvent.Op op, String path, String target,
+                        boolean isDirectory, boolean external) {
+    }
+
+    // resync=true: Client muss komplett neu listen und danach ab cursor weitermachen
+    public record ChangeSet(List<Entry> changes, long cursor, boolean hasMore, boolean resync) {
+    }
+
+    private static final class UserJournal {
+        final Path file;
+        long floor;
+        long lastSeq;
+        long entriesOnDisk;
+        final ArrayDeque<Entry> recent = new ArrayDeque<>();
+
+        UserJournal(Path file) {
+            this.file = file;
+        }
+    }
+
+    private final Path dir;
+    private final int recentSize;
+    private final long maxEntries;
+    private final long keepEntries;
+    private final Map<String, UserJournal> journals = new ConcurrentHashMap<>();
+
+    public ChangeJournal(@Value("${fily.journal.dir:./data/journal}") String journalDir,
+                         @Value("${fily.journal.recent-in-memory:1000}") int recentSize,
+                         @Value("${fily.journal.max-entries:100000}") long maxEntries,
+                         @Value("${fily.journal.keep-entries:50000}") long keepEntries) throws IOException {
+        this.dir = Paths.get(journalDir);
+        this.recentSize = recentSize;
+        this.maxEntries = maxEntries;
+        this.keepEntries = keepEntries;
+        Files.createDirectories(dir);
+    }
+
+    @EventListener
+    public void onChange(FileChangeEvent event) {
+        try {
+            append(event);
+        } catch (IOException | RuntimeException e) {
+            // Nie an den Aufrufer durchreichen: die Dateiänderung ist schon passiert, weitere Listener sollen laufen
+            logger.error("Journal-Eintrag konnte nicht geschrieben werden für {}: {}", event.username(), event, e);
+        }
+    }
+
+    public void append(FileChangeEvent event) throws IOException {
+        UserJournal journal = journal(event.username());
+        synchronized (journal) {
+            Entry entry = new Entry(journal.lastSeq + 1, System.currentTimeMillis(), event.op(), event.path(),
+                    event.targetPath(), event.directory(), event.external());
+            Files.writeString(journal.file, format(entry), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+            journal.lastSeq = entry.seq();
+            journal.entriesOnDisk++;
+            remember(journal, entry);
+        }
+    }
+
+    public ChangeSet changesSince(String username, long since, int limit) throws IOException {
+        UserJournal journal = journal(username);
+        synchronized (journal) {
+            if (since < journal.floor || since > journal.lastSeq) {
+                return new ChangeSet(List.of(), journal.lastSeq, false, true);
+            }
+            if (since == journal.lastSeq) {
+                return new ChangeSet(List.of(), since, false, false);
+            }
+
+            List<Entry> changes = new ArrayList<>();
+            Entry oldestInMemory = journal.recent.peekFirst();
+            if (oldestInMemory != null && oldestInMemory.seq() <= since + 1) {
+                for (Entry entry : journal.recent) {
+                    if (entry.seq() <= since) continue;
+                    if (changes.size() == limit) break;
+                    changes.add(entry);
+                }
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(journal.file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null && changes.size() < limit) {
+                        if (line.startsWith("#")) continue;
+                        Entry entry = parse(line);
+                        if (entry.seq() > since) changes.add(entry);
+                    }
+                }
+            }
+            long cursor = changes.isEmpty() ? since : changes.get(changes.size() - 1).seq();
+            return new ChangeSet(coalesce(changes), cursor, cursor < journal.lastSeq, false);
+        }
+    }
+
+    // Direkt aufeinanderfolgende MODIFY derselben Datei innerhalb einer Antwort zusammenfassen
+    // (der neueste bleibt); geschrieben wird jede Änderung, sonst ginge sie nach einem Cursor verloren
+    private static List<Entry> coalesce(List<Entry> changes) {
+        List<Entry> result = new ArrayList<>(changes.size());
+        for (Entry entry : changes) {
+            Entry last = result.isEmpty() ? null : result.get(result.size() - 1);
+            if (last != null && entry.op() == FileChangeEvent.Op.MODIFY && last.op() == entry.op()
+                    && last.path().equals(entry.path())) {
+                result.set(result.size() - 1, entry);
+            } else {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    // Kürzt zu lange Journale auf die letzten keepEntries Einträge
+    @Scheduled(fixedDelayString = "${fily.journal.compaction-interval-ms:3600000}")
+    public void compact() {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(".log"))
+                    .forEach(p -> {
+                        String name = p.getFileName().toString();
+                        try {
+                            compact(journal(name.substring(0, name.length() - 4)));
+                        } catch (IOException e) {
+                            logger.warn("Journal-Kompaktierung fehlgeschlagen: {}", p, e);
+                        }
+                    });
+        } catch (IOException e) {
+            logger.warn("Journal-Verzeichnis nicht lesbar: {}", dir, e);
+        }
+    }
+
+    private void compact(UserJournal journal) throws IOException {
+        synchronized (journal) {
+            if (journal.entriesOnDisk <= maxEntries) return;
+            long newFloor = journal.lastSeq - keepEntries;
+            Path tmp = journal.file.resolveSibling(journal.file.getFileName() + ".tmp");
+            long kept = 0;
+            try (BufferedReader reader = Files.newBufferedReader(journal.file, StandardCharsets.UTF_8);
+                 BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write("#floor=" + newFloor + "\n");
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("#")) continue;
+                    if (parse(line).seq() > newFloor) {
+                        writer.write(line);
+                        writer.write('\n');
+                        kept++;
+                    }
+                }
+            }
+            Files.move(tmp, journal.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.floor = newFloor;
+            journal.entriesOnDisk = kept;
+            while (!journal.recent.isEmpty() && journal.recent.peekFirst().seq() <= newFloor) {
+                journal.recent.pollFirst();
+            }
+            logger.info("Journal kompaktiert: {} (floor={}, {} Einträge)", journal.file, newFloor, kept);
+        }
+    }
+
+    private UserJournal journal(String username) throws IOException {
+        UserJournal journal = journals.get(username);
+        if (journal != null) return journal;
+        if (username.contains("/") || username.contains("\\") || username.contains("..")) {
+            throw new IllegalArgumentException("Ungültiger Benutzername: " + username);
+        }
+        journal = new UserJournal(dir.resolve(username + ".log"));
+        // Sperre vor dem Eintragen halten, damit niemand ein halb geladenes Journal benutzt
+        synchronized (journal) {
+            UserJournal existing = journals.putIfAbsent(username, journal);
+            if (existing != null) return existing;
+            try {
+                load(journal);
+            } catch (IOException | RuntimeException e) {
+                journals.remove(username, journal);
+                throw e;
+            }
+        }
+        return journal;
+    }
+
+    private void load(UserJournal journal) throws IOException {
+        if (!Files.exists(journal.file)) return;
+        // Lenient dekodieren: eine abgerissene Zeile kann mitten in einem UTF-8-Zeichen enden
+        String content = new String(Files.readAllBytes(journal.file), StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>(Arrays.asList(content.split("\n", -1)));
+        List<String> valid = new ArrayList<>(lines.size());
+        int broken = 0;
+        // Jeder Eintrag endet mit \n; steht danach noch etwas, ist die letzte Zeile abgerissen
+        if (!lines.remove(lines.size() - 1).isEmpty()) broken++;
+        for (String line : lines) {
+            if (line.startsWith("#floor=")) {
+                journal.floor = Long.parseLong(line.substring(7));
+                journal.lastSeq = Math.max(journal.lastSeq, journal.floor);
+                valid.add(line);
+                continue;
+            }
+            if (line.isEmpty()) continue;
+            Entry entry;
+            try {
+                entry = parse(line);
+            } catch (RuntimeException e) {
+                broken++;
+                continue;
+            }
+            if (entry.seq() <= journal.lastSeq) {
+                broken++;
+                continue;
+            }
+            journal.lastSeq = entry.seq();
+            journal.entriesOnDisk++;
+            remember(journal, entry);
+            valid.add(line);
+        }
+        if (broken > 0) {
+            // Abgerissene Zeilen (Absturz oder volle Platte beim Anhängen) entfernen, sonst hinge der
+            // nächste Eintrag an einer halben Zeile
+            Path tmp = journal.file.resolveSibling(journal.file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (String line : valid) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+            Files.move(tmp, journal.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.warn("Journal {} repariert: {} unlesbare Zeilen entfernt", journal.file, broken);
+        }
+    }
+
+    private void remember(UserJournal journal, Entry entry) {
+        journal.recent.addLast(entry);
+        if (journal.recent.size() > recentSize) journal.recent.pollFirst();
+    }
+
+    // Zeilenformat: seq, timestamp, op, isDirectory, external, path, target (Tab-getrennt)
+    private static String format(Entry e) {
+        return e.seq() + "\t" + e.timestamp() + "\t" + e.op() + "\t" + (e.isDirectory() ? 1 : 0) + "\t"
+                + (e.external() ? 1 : 0) + "\t" + escape(e.path()) + "\t"
+                + (e.target() == null ? "" : escape(e.target())) + "\n";
+    }
+
+    private static Entry parse(String line) {
+        String[] f = line.split("\t", -1);
+        return new Entry(Long.parseLong(f[0]), Long.parseLong(f[1]), FileChangeEvent.Op.valueOf(f[2]),
+                unescape(f[5]), f[6].isEmpty() ? null : unescape(f[6]), f[3].equals("1"), f[4].equals("1"));
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,176 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.cache.DiskCache;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class CompressionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompressionService.class);
+
+    public enum Encoding {
+        GZIP("gzip"), DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "application/json", "application/xml", "application/javascript",
+            "image/svg+xml");
+
+    private final DiskCache cache;
+    private final long minBytes;
+    private final ExecutorService executor;
+    // Schlüssel, die gerade im Hintergrund komprimiert werden
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public CompressionService(@Value("${fily.cache.dir:./data/cache}") String cacheDir,
+                              @Value("${fily.compression.cache-max-bytes:1073741824}") long cacheMaxBytes,
+                              @Value("${fily.compression.precompress-min-bytes:65536}") long minBytes) throws IOException {
+        this.cache = new DiskCache(Paths.get(cacheDir, "compressed"), cacheMaxBytes);
+        this.minBytes = minBytes;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "fily-precompress");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Wählt anhand von Accept-Encoding die Kodierung mit dem höchsten q-Wert (bei Gleichstand gzip
+    // vor deflate), sonst null. "*" gilt nur für Kodierungen, die nicht selbst aufgeführt sind.
+    public static Encoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return null;
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String token = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = quality(params);
+            switch (token) {
+                case "gzip", "x-gzip" -> gzip = Math.max(gzip, q);
+                case "deflate" -> deflate = Math.max(deflate, q);
+                case "*" -> wildcard = Math.max(wildcard, q);
+                default -> { }
+            }
+        }
+        if (gzip < 0) gzip = wildcard;
+        if (deflate < 0) deflate = wildcard;
+        if (gzip <= 0 && deflate <= 0) return null;
+        return gzip >= deflate ? Encoding.GZIP : Encoding.DEFLATE;
+    }
+
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || COMPRESSIBLE_TYPES.contains(type);
+    }
+
+    // Große Textdateien laufen über die vorkomprimierten Varianten
+    public boolean isPrecompressCandidate(File file, String contentType) {
+        return isCompressible(contentType) && file.length() >= minBytes;
+    }
+
+    public static OutputStream wrap(OutputStream out, Encoding encoding, int level) throws IOException {
+        if (encoding == Encoding.GZIP) {
+            return new GZIPOutputStream(out, 64 * 1024) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        return new DeflaterOutputStream(out, new Deflater(level), 64 * 1024);
+    }
+
+    // Liefert die vorkomprimierte Variante aus dem Cache. Fehlt sie, wird sie im Hintergrund
+    // erzeugt und null zurückgegeben; kleine Dateien übernimmt die Kompression des Servers.
+    public File getPrecompressed(File file, Encoding encoding) {
+        if (file.length() < minBytes) return null;
+        String key = DiskCache.key(file.getAbsolutePath(), file.lastModified(), file.length(), encoding.getToken());
+        File cached = cache.get(key);
+        if (cached != null) return cached;
+
+        if (pending.add(key)) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        precompress(file, encoding, key);
+                    } finally {
+                        pending.remove(key);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pending.remove(key);
+            }
+        }
+        return null;
+    }
+
+    private void precompress(File file, Encoding encoding, String key) {
+        long start = System.nanoTime();
+        long mtime = file.lastModified();
+        try {
+            File variant = cache.put(key, out -> {
+                try (InputStream in = new FileInputStream(file)) {
+                    OutputStream compressed = wrap(out, encoding, Deflater.BEST_COMPRESSION);
+                    in.transferTo(compressed);
+                    compressed.close();
+                }
+            });
+            // Während des Komprimierens geändert -> Variante verwerfen
+            if (file.lastModified() != mtime) {
+                cache.remove(key);
+                return;
+            }
+            logger.debug("{} vorkomprimiert ({}): {} -> {} Bytes in {} ms", file, encoding.getToken(),
+                    file.length(), Files.size(variant.toPath()),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            logger.warn("Vorkomprimieren fehlgeschlagen: {}", file, e);
+        }
+    }
+
+    // q-Parameter (0..1); fehlt er oder ist er ungültig, gilt 1
+    private static double quality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    double q = Double.parseDouble(param.substring(2));
+                    return Double.isNaN(q) ? 1.0 : Math.min(1.0, Math.max(0.0, q));
+                } catch (NumberFormatException e) {
+                    return 1.0;
+                }
+            }
+        }
+        return 1.0;
+    }
+}
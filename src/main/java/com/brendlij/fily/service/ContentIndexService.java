@@ -0,0 +1,571 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.event.FileChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Invertierter Volltextindex pro Benutzer für Textdateien.
+// Postings werden als varint-kodierte (docId-Delta, Häufigkeit)-Paare gehalten und
+// als data/index/<user>.idx gespeichert. Gelöschte Dokumente bleiben bis zur Kompaktierung als Lücke stehen.
+@Service
+public class ContentIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentIndexService.class);
+
+    private static final int FILE_MAGIC = 0x46495831; // "FIX1"
+    private static final Set<String> TEXT_EXTENSIONS = Set.of(
+            "txt", "md", "markdown", "csv", "tsv", "json", "xml", "yml", "yaml", "log", "ini", "properties",
+            "java", "kt", "js", "ts", "jsx", "tsx", "py", "go", "rs", "c", "h", "cpp", "hpp", "cs", "rb", "php",
+            "html", "htm", "css", "scss", "sh", "sql", "toml");
+    private static final int MIN_TOKEN = 2;
+    private static final int MAX_TOKEN = 64;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    public record Hit(String path, double score, String snippet) {
+    }
+
+    private record Doc(String path, long mtime, long size, int length) {
+    }
+
+    private record Tokenized(String path, long mtime, long size, int length, Map<String, Integer> terms) {
+    }
+
+    private static final class PostingList {
+        byte[] data = new byte[8];
+        int size;
+        int lastDoc = -1;
+
+        void add(int docId, int tf) {
+            writeVarInt(docId - lastDoc);
+            writeVarInt(tf);
+            lastDoc = docId;
+        }
+
+        private void writeVarInt(int value) {
+            if (size + 5 > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, size + 5));
+            while ((value & ~0x7f) != 0) {
+                data[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+
+    // Liest eine PostingList sequenziell
+    private static final class PostingCursor {
+        final PostingList list;
+        int pos;
+        int doc = -1;
+        int tf;
+
+        PostingCursor(PostingList list) {
+            this.list = list;
+        }
+
+        boolean next() {
+            if (pos >= list.size) return false;
+            doc += readVarInt();
+            tf = readVarInt();
+            return true;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = list.data[pos++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    private static final class UserIndex {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final ArrayList<Doc> docs = new ArrayList<>();
+        final HashMap<String, Integer> byPath = new HashMap<>();
+        final HashMap<String, PostingList> postings = new HashMap<>();
+        long totalLength;
+        int liveDocs;
+        boolean dirty;
+    }
+
+    private final Path indexDir;
+    private final long maxFileBytes;
+    private final int snippetScanBytes;
+    // Ereignisse seriell (Reihenfolge bleibt erhalten), Tokenisieren parallel
+    private final ExecutorService executor;
+    private final ForkJoinPool tokenizerPool;
+    private final Map<String, UserIndex> indexes = new ConcurrentHashMap<>();
+    private final TieredStorageService tieredStorage;
+
+    @Value("${fileserver.basedir}")
+    private String baseDir;
+
+    public ContentIndexService(TieredStorageService tieredStorage,
+                               @Value("${fily.search.index-dir:./data/index}") String indexDir,
+                               @Value("${fily.search.max-file-bytes:2097152}") long maxFileBytes,
+                               @Value("${fily.search.indexer-threads:2}") int threads,
+                               @Value("${fily.search.snippet-scan-bytes:65536}") int snippetScanBytes) throws IOException {
+        this.tieredStorage = tieredStorage;
+        this.indexDir = Paths.get(indexDir);
+        this.maxFileBytes = maxFileBytes;
+        this.snippetScanBytes = snippetScanBytes;
+        Files.createDirectories(this.indexDir);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "fily-indexer");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        this.tokenizerPool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    // Beim Start alle Benutzerordner im Hintergrund mit dem gespeicherten Index abgleichen
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread scanner = new Thread(() -> {
+            File[] userDirs = new File(baseDir).listFiles(File::isDirectory);
+            if (userDirs == null) return;
+            for (File userDir : userDirs) {
+                try {
+                    rescan(userDir.getName(), "");
+                } catch (Exception e) {
+                    logger.warn("Indexierung für {} fehlgeschlagen", userDir.getName(), e);
+                }
+            }
+        }, "fily-index-scan");
+        scanner.setDaemon(true);
+        scanner.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        tokenizerPool.shutdownNow();
+        flush();
+    }
+
+    @EventListener
+    public void onChange(FileChangeEvent event) {
+        try {
+            executor.execute(() -> {
+                try {
+                    apply(event);
+                } catch (Exception e) {
+                    logger.warn("Index-Update fehlgeschlagen: {}", event, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Indexer beendet, Ereignis verworfen: {}", event);
+        }
+    }
+
+    public static boolean isIndexable(String name) {
+        int i = name.lastIndexOf('.');
+        return i > 0 && TEXT_EXTENSIONS.contains(name.substring(i + 1).toLowerCase(Locale.ROOT));
+    }
+
+    public List<Hit> search(String username, String query, int limit) throws IOException {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query).keySet()));
+        if (terms.isEmpty()) return List.of();
+
+        UserIndex index = index(username);
+        List<Map.Entry<Integer, Double>> top;
+        List<Doc> topDocs = new ArrayList<>();
+        index.lock.readLock().lock();
+        try {
+            if (index.liveDocs == 0) return List.of();
+            double avgLength = (double) index.totalLength / index.liveDocs;
+            Map<Integer, Double> scores = new HashMap<>();
+            Map<Integer, Integer> matched = new HashMap<>();
+            for (String term : terms) {
+                PostingList list = index.postings.get(term);
+                if (list == null) continue;
+                List<int[]> live = new ArrayList<>();
+                PostingCursor cursor = new PostingCursor(list);
+                while (cursor.next()) {
+                    if (index.docs.get(cursor.doc) != null) live.add(new int[]{cursor.doc, cursor.tf});
+                }
+                double idf = Math.log(1 + (index.liveDocs - live.size() + 0.5) / (live.size() + 0.5));
+                for (int[] posting : live) {
+                    Doc doc = index.docs.get(posting[0]);
+                    double tf = posting[1];
+                    double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * doc.length() / avgLength));
+                    scores.merge(posting[0], score, Double::sum);
+                    matched.merge(posting[0], 1, Integer::sum);
+                }
+            }
+            // Dokumente, die alle Begriffe enthalten, stehen vorne
+            scores.replaceAll((doc, score) -> score * matched.get(doc) / terms.size());
+            top = scores.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+                    .limit(limit)
+                    .toList();
+            for (Map.Entry<Integer, Double> entry : top) topDocs.add(index.docs.get(entry.getKey()));
+        } finally {
+            index.lock.readLock().unlock();
+        }
+
+        List<Hit> hits = new ArrayList<>(top.size());
+        Path userRoot = Paths.get(baseDir, username);
+        for (int i = 0; i < top.size(); i++) {
+            String path = topDocs.get(i).path();
+            hits.add(new Hit(path, top.get(i).getValue(), snippet(userRoot.resolve(path), terms)));
+        }
+        return hits;
+    }
+
+    // Geänderte Indizes regelmäßig speichern
+    @Scheduled(fixedDelayString = "${fily.search.flush-interval-ms:300000}")
+    public void flush() {
+        for (Map.Entry<String, UserIndex> entry : indexes.entrySet()) {
+            try {
+                save(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                logger.warn("Index für {} konnte nicht gespeichert werden", entry.getKey(), e);
+            }
+        }
+    }
+
+    private void apply(FileChangeEvent event) throws IOException {
+        String username = event.username();
+        switch (event.op()) {
+            case CREATE, MODIFY -> indexFile(username, event.path());
+            case DELETE -> removePrefix(index(username), event.path());
+            case RENAME, MOVE -> {
+                removePrefix(index(username), event.path());
+                rescan(username, event.targetPath());
+            }
+            case RESYNC -> rescan(username, event.path());
+            // Von außen hineinverschobene Ordner kommen nur als MKDIR an, ihr Inhalt muss mit
+            case MKDIR -> rescan(username, event.path());
+        }
+    }
+
+    private void indexFile(String username, String path) throws IOException {
+        Path file = Paths.get(baseDir, username).resolve(path);
+        UserIndex index = index(username);
+        if (!isIndexable(file.getFileName().toString()) || !Files.isRegularFile(file)) {
+            removePrefix(index, path);
+            return;
+        }
+        Tokenized tokenized = tokenizeFile(file, path);
+        if (tokenized != null) add(index, tokenized);
+    }
+
+    // Teilbaum mit dem Index abgleichen: neue/geänderte Dateien parallel tokenisieren, fehlende entfernen
+    private void rescan(String username, String subPath) throws IOException {
+        UserIndex index = index(username);
+        Path userRoot = Paths.get(baseDir, username);
+        Path start = subPath.isEmpty() ? userRoot : userRoot.resolve(subPath);
+        if (!Files.exists(start)) {
+            removePrefix(index, subPath);
+            return;
+        }
+
+        Set<String> seen = new HashSet<>();
+        List<Callable<Tokenized>> tasks = new ArrayList<>();
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile() || !isIndexable(file.getFileName().toString())) return FileVisitResult.CONTINUE;
+                String path = userRoot.relativize(file).toString().replace('\\', '/');
+                seen.add(path);
+                if (!isCurrent(index, path, attrs.lastModifiedTime().toMillis(), attrs.size())) {
+                    tasks.add(() -> tokenizeFile(file, path));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Nicht mehr vorhandene Dateien aus dem Index nehmen
+        index.lock.writeLock().lock();
+        try {
+            String prefix = subPath.isEmpty() ? "" : subPath + "/";
+            List<String> stale = index.byPath.keySet().stream()
+                    .filter(p -> (p.equals(subPath) || p.startsWith(prefix)) && !seen.contains(p))
+                    .toList();
+            for (String path : stale) remove(index, path);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+
+        if (tasks.isEmpty()) return;
+        long start0 = System.nanoTime();
+        // Tokenisieren parallel, Einfügen in den Index seriell unter der Schreibsperre
+        List<Future<Tokenized>> futures = new ArrayList<>(tasks.size());
+        for (Callable<Tokenized> task : tasks) futures.add(tokenizerPool.submit(task));
+        for (Future<Tokenized> future : futures) {
+            try {
+                Tokenized tokenized = future.get();
+                if (tokenized != null) add(index, tokenized);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.debug("Datei konnte nicht indexiert werden", e.getCause());
+            }
+        }
+        logger.info("Index für {} aktualisiert: {} Dateien in {} ms", username, tasks.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start0));
+    }
+
+    private boolean isCurrent(UserIndex index, String path, long mtime, long size) {
+        index.lock.readLock().lock();
+        try {
+            Integer id = index.byPath.get(path);
+            if (id == null) return false;
+            Doc doc = index.docs.get(id);
+            return doc.mtime() == mtime && doc.size() == size;
+        } finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    private Tokenized tokenizeFile(Path file, String path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attrs.size() > maxFileBytes) return null;
+        String text = readText(file);
+        Map<String, Integer> terms = tokenize(text);
+        int length = 0;
+        for (int tf : terms.values()) length += tf;
+        return new Tokenized(path, attrs.lastModifiedTime().toMillis(), attrs.size(), length, terms);
+    }
+
+    private void add(UserIndex index, Tokenized t) {
+        index.lock.writeLock().lock();
+        try {
+            Integer existing = index.byPath.get(t.path());
+            if (existing != null) {
+                // Ältere Version (z.B. aus parallel laufender Aufgabe) nicht über neuere schreiben
+                if (index.docs.get(existing).mtime() > t.mtime()) return;
+                remove(index, t.path());
+            }
+            int docId = index.docs.size();
+            index.docs.add(new Doc(t.path(), t.mtime(), t.size(), t.length()));
+            index.byPath.put(t.path(), docId);
+            index.totalLength += t.length();
+            index.liveDocs++;
+            for (Map.Entry<String, Integer> term : t.terms().entrySet()) {
+                index.postings.computeIfAbsent(term.getKey(), k -> new PostingList()).add(docId, term.getValue());
+            }
+            index.dirty = true;
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private void removePrefix(UserIndex index, String path) {
+        index.lock.writeLock().lock();
+        try {
+            String prefix = path + "/";
+            List<String> matches = index.byPath.keySet().stream()
+                    .filter(p -> p.equals(path) || p.startsWith(prefix))
+                    .toList();
+            for (String p : matches) remove(index, p);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    // Nur unter Schreibsperre aufrufen
+    private void remove(UserIndex index, String path) {
+        Integer id = index.byPath.remove(path);
+        if (id == null) return;
+        Doc doc = index.docs.set(id, null);
+        index.totalLength -= doc.length();
+        index.liveDocs--;
+        index.dirty = true;
+        if (index.docs.size() > 1000 && index.liveDocs < index.docs.size() * 2 / 3) {
+            compact(index);
+        }
+    }
+
+    // Lücken gelöschter Dokumente entfernen und Postings neu kodieren
+    private void compact(UserIndex index) {
+        int[] mapping = new int[index.docs.size()];
+        ArrayList<Doc> docs = new ArrayList<>(index.liveDocs);
+        for (int i = 0; i < index.docs.size(); i++) {
+            Doc doc = index.docs.get(i);
+            if (doc == null) {
+                mapping[i] = -1;
+            } else {
+                mapping[i] = docs.size();
+                docs.add(doc);
+            }
+        }
+        Iterator<Map.Entry<String, PostingList>> it = index.postings.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, PostingList> entry = it.next();
+            PostingList compacted = new PostingList();
+            PostingCursor cursor = new PostingCursor(entry.getValue());
+            while (cursor.next()) {
+                if (mapping[cursor.doc] >= 0) compacted.add(mapping[cursor.doc], cursor.tf);
+            }
+            if (compacted.size == 0) it.remove();
+            else entry.setValue(compacted);
+        }
+        index.docs.clear();
+        index.docs.addAll(docs);
+        index.byPath.clear();
+        for (int i = 0; i < docs.size(); i++) index.byPath.put(docs.get(i).path(), i);
+    }
+
+    private UserIndex index(String username) throws IOException {
+        UserIndex index = indexes.get(username);
+        if (index != null) return index;
+        if (username.contains("/") || username.contains("\\") || username.contains("..")) {
+            throw new IllegalArgumentException("Ungültiger Benutzername: " + username);
+        }
+        index = new UserIndex();
+        index.lock.writeLock().lock();
+        try {
+            UserIndex existing = indexes.putIfAbsent(username, index);
+            if (existing != null) return existing;
+            load(username, index);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+        return index;
+    }
+
+    private void load(String username, UserIndex index) {
+        Path file = indexDir.resolve(username + ".idx");
+        if (!Files.exists(file)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 256 * 1024))) {
+            if (in.readInt() != FILE_MAGIC) throw new IOException("Unbekanntes Indexformat");
+            int docCount = in.readInt();
+            for (int i = 0; i < docCount; i++) {
+                Doc doc = new Doc(in.readUTF(), in.readLong(), in.readLong(), in.readInt());
+                index.docs.add(doc);
+                index.byPath.put(doc.path(), i);
+                index.totalLength += doc.length();
+            }
+            index.liveDocs = docCount;
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                PostingList list = new PostingList();
+                list.lastDoc = in.readInt();
+                list.size = in.readInt();
+                list.data = new byte[Math.max(8, list.size)];
+                in.readFully(list.data, 0, list.size);
+                index.postings.put(term, list);
+            }
+            logger.info("Index für {} geladen: {} Dokumente, {} Begriffe", username, docCount, termCount);
+        } catch (IOException e) {
+            logger.warn("Index für {} unlesbar, wird neu aufgebaut", username, e);
+            index.docs.clear();
+            index.byPath.clear();
+            index.postings.clear();
+            index.totalLength = 0;
+            index.liveDocs = 0;
+        }
+    }
+
+    private void save(String username, UserIndex index) throws IOException {
+        // Schreibsperre, weil vor dem Speichern kompaktiert wird (keine Lücken in der Datei)
+        index.lock.writeLock().lock();
+        try {
+            if (!index.dirty) return;
+            if (index.liveDocs < index.docs.size()) compact(index);
+            Path file = indexDir.resolve(username + ".idx");
+            Path tmp = indexDir.resolve(username + ".idx.tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 256 * 1024))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(index.docs.size());
+                for (Doc doc : index.docs) {
+                    out.writeUTF(doc.path());
+                    out.writeLong(doc.mtime());
+                    out.writeLong(doc.size());
+                    out.writeInt(doc.length());
+                }
+                out.writeInt(index.postings.size());
+                for (Map.Entry<String, PostingList> entry : index.postings.entrySet()) {
+                    PostingList list = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(list.lastDoc);
+                    out.writeInt(list.size);
+                    out.write(list.data, 0, list.size);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            index.dirty = false;
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private String readText(Path file) throws IOException {
+        return readText(file, (int) maxFileBytes);
+    }
+
+    private String readText(Path file, int limit) throws IOException {
+        try (InputStream in = tieredStorage.openLogical(file.toFile())) {
+            return new String(in.readNBytes(limit), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Nur den Anfang der Datei durchsuchen (snippet-scan-bytes), sonst liest jede Suche
+    // bis zu limit * max-file-bytes; steht kein Begriff darin, beginnt der Ausschnitt am Dateianfang
+    private String snippet(Path file, List<String> terms) {
+        try {
+            String text = readText(file, snippetScanBytes);
+            String lower = text.toLowerCase(Locale.ROOT);
+            int pos = -1;
+            for (String term : terms) {
+                int i = lower.indexOf(term);
+                if (i >= 0 && (pos < 0 || i < pos)) pos = i;
+            }
+            if (pos < 0) pos = 0;
+            int from = Math.max(0, pos - 60);
+            int to = Math.min(text.length(), pos + 100);
+            String snippet = text.substring(from, to).replaceAll("\\s+", " ").trim();
+            return (from > 0 ? "…" : "") + snippet + (to < text.length() ? "…" : "");
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    // Kleinbuchstaben, Folgen aus Buchstaben/Ziffern
+    static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TOKEN && length <= MAX_TOKEN) {
+                    terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
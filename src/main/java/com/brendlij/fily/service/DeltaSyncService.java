@@ -0,0 +1,202 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.cache.DiskCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+// rsync-ähnlicher Delta-Upload.
+//
+// Signatur (GET): "FDS1", int blockSize, long fileLength, int blockCount,
+//                 dann pro Block: int weak (rsync-Rolling-Checksum), 16 Byte MD5.
+// Delta (POST):   "FDD1", int blockSize, dann Anweisungen:
+//                 'B' int startBlock int count -> Blöcke aus der alten Datei übernehmen
+//                 'L' int length, Bytes       -> neue Daten
+//                 'E' 32 Byte SHA-256 der kompletten neuen Datei -> Ende
+@Service
+public class DeltaSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaSyncService.class);
+
+    private static final int SIGNATURE_MAGIC = 0x46445331; // "FDS1"
+    private static final int DELTA_MAGIC = 0x46444431;     // "FDD1"
+    private static final int MIN_BLOCK_SIZE = 2 * 1024;
+    private static final int MAX_BLOCK_SIZE = 128 * 1024;
+    private static final int MAX_LITERAL = 16 * 1024 * 1024;
+
+    public static class DeltaException extends IOException {
+        public DeltaException(String message) {
+            super(message);
+        }
+    }
+
+    private final DiskCache signatureCache;
+    private final long maxFileBytes;
+
+    public DeltaSyncService(@Value("${fily.cache.dir:./data/cache}") String cacheDir,
+                            @Value("${fily.delta.signature-cache-max-bytes:268435456}") long cacheMaxBytes,
+                            @Value("${fily.delta.max-file-bytes:2147483648}") long maxFileBytes) throws IOException {
+        this.signatureCache = new DiskCache(Paths.get(cacheDir, "signatures"), cacheMaxBytes);
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    // Blockgröße wie bei rsync etwa Wurzel der Dateigröße, als Zweierpotenz begrenzt
+    public static int chooseBlockSize(long fileLength, int requested) {
+        int size = requested > 0 ? requested : Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, (long) Math.sqrt(fileLength)));
+        return Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, size));
+    }
+
+    // Signatur aus dem Cache (Schlüssel: Pfad + mtime + Länge + Blockgröße) oder streamend neu berechnet
+    public File signature(File file, int blockSize) throws IOException {
+        long mtime = file.lastModified();
+        long length = file.length();
+        String key = DiskCache.key(file.getAbsolutePath(), mtime, length, blockSize);
+        File cached = signatureCache.get(key);
+        if (cached != null) return cached;
+
+        long start = System.nanoTime();
+        File signature = signatureCache.put(key, out -> writeSignature(file, blockSize, out));
+        if (file.lastModified() != mtime || file.length() != length) {
+            // Datei hat sich während des Hashens geändert -> Signatur nicht aufheben
+            signatureCache.remove(key);
+            throw new DeltaException("Datei wurde während der Signaturberechnung geändert");
+        }
+        logger.debug("Signatur für {} berechnet ({} Bytes, Blockgröße {}) in {} ms", file, length, blockSize,
+                (System.nanoTime() - start) / 1_000_000);
+        return signature;
+    }
+
+    // Baut die neue Version in einer temporären Datei neben dem Ziel und ersetzt das Ziel atomar.
+    // Gibt die Größe der neuen Datei zurück.
+    public long applyDelta(File base, InputStream deltaStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(deltaStream, 64 * 1024));
+        if (in.readInt() != DELTA_MAGIC) throw new DeltaException("Ungültiges Delta-Format");
+        int blockSize = in.readInt();
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) throw new DeltaException("Ungültige Blockgröße");
+
+        Path tmp = base.toPath().resolveSibling(".fily-delta-" + UUID.randomUUID() + ".tmp");
+        MessageDigest sha256 = digest("SHA-256");
+        long written = 0;
+        try (FileChannel source = FileChannel.open(base.toPath(), StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long blockCount = (source.size() + blockSize - 1) / blockSize;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(MAX_BLOCK_SIZE, 256 * 1024));
+            byte[] literal = new byte[64 * 1024];
+
+            while (true) {
+                int op = in.read();
+                if (op == 'B') {
+                    long first = Integer.toUnsignedLong(in.readInt());
+                    long count = Integer.toUnsignedLong(in.readInt());
+                    if (first + count > blockCount) throw new DeltaException("Blockverweis außerhalb der Datei");
+                    long position = first * blockSize;
+                    long end = Math.min(source.size(), (first + count) * blockSize);
+                    // Ein kurzer Verweis kann die ganze Datei kopieren: Größe prüfen, bevor geschrieben wird
+                    checkSize(written + Math.max(0, end - position));
+                    written += copy(source, position, end, target, buffer, sha256);
+                } else if (op == 'L') {
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_LITERAL) throw new DeltaException("Ungültige Literal-Länge");
+                    checkSize(written + length);
+                    int remaining = length;
+                    while (remaining > 0) {
+                        int n = in.read(literal, 0, Math.min(literal.length, remaining));
+                        if (n < 0) throw new EOFException();
+                        sha256.update(literal, 0, n);
+                        target.write(ByteBuffer.wrap(literal, 0, n));
+                        remaining -= n;
+                    }
+                    written += length;
+                } else if (op == 'E') {
+                    byte[] expected = new byte[32];
+                    in.readFully(expected);
+                    if (!MessageDigest.isEqual(expected, sha256.digest())) {
+                        throw new DeltaException("Prüfsumme der neuen Datei stimmt nicht");
+                    }
+                    break;
+                } else {
+                    throw new DeltaException(op < 0 ? "Delta unvollständig" : "Unbekannte Anweisung: " + op);
+                }
+            }
+            target.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        Files.move(tmp, base.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    private void checkSize(long size) throws DeltaException {
+        if (size > maxFileBytes) throw new DeltaException("Neue Datei wäre größer als " + maxFileBytes + " Bytes");
+    }
+
+    private static long copy(FileChannel source, long position, long end, FileChannel target,
+                             ByteBuffer buffer, MessageDigest digest) throws IOException {
+        long copied = 0;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int n = source.read(buffer, position);
+            if (n < 0) throw new EOFException();
+            buffer.flip();
+            digest.update(buffer);
+            buffer.rewind();
+            while (buffer.hasRemaining()) target.write(buffer);
+            position += n;
+            copied += n;
+        }
+        return copied;
+    }
+
+    private static void writeSignature(File file, int blockSize, OutputStream rawOut) throws IOException {
+        MessageDigest md5 = digest("MD5");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(rawOut, 64 * 1024));
+        long length = file.length();
+        out.writeInt(SIGNATURE_MAGIC);
+        out.writeInt(blockSize);
+        out.writeLong(length);
+        out.writeInt((int) ((length + blockSize - 1) / blockSize));
+
+        byte[] block = new byte[blockSize];
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 256 * 1024)) {
+            int n;
+            while ((n = in.readNBytes(block, 0, blockSize)) > 0) {
+                out.writeInt(weakChecksum(block, n));
+                md5.update(block, 0, n);
+                out.write(md5.digest());
+            }
+        }
+        out.flush();
+    }
+
+    // rsync: a = Summe der Bytes, b = gewichtete Summe; jeweils mod 2^16
+    static int weakChecksum(byte[] data, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int x = data[i] & 0xff;
+            a += x;
+            b += (length - i) * x;
+        }
+        return (a & 0xffff) | (b << 16);
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.brendlij.fily.service;
+
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Ordnerinhalt als JSON-Einträge, gemeinsam für /api/files und geteilte Ordner (/api/share)
+@Service
+public class DirectoryListing {
+
+    // Temporäre Dateien laufender Uploads/Tauschvorgänge (.fily-upload-*, .fily-delta-*, .fily-tier-*, .fily-extract-*)
+    public static final String INTERNAL_PREFIX = ".fily-";
+
+    private final TieredStorageService tieredStorage;
+
+    public DirectoryListing(TieredStorageService tieredStorage) {
+        this.tieredStorage = tieredStorage;
+    }
+
+    public static boolean isInternal(String name) {
+        return name.startsWith(INTERNAL_PREFIX);
+    }
+
+    public List<Map<String, Object>> list(File folder, String currentPath) {
+        File[] files = folder.listFiles();
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (isInternal(file.getName())) continue;
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("name", file.getName());
+                entry.put("isDirectory", file.isDirectory());
+                entry.put("size", file.isFile() ? tieredStorage.logicalSize(file) : null);
+                entry.put("lastModified", file.lastModified());
+                entry.put("path", currentPath.isEmpty() ? file.getName() : currentPath + "/" + file.getName());
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,237 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.event.FileChangeEvent;
+import com.brendlij.fily.event.FileChangeEvent.Op;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// Ein gemeinsamer WatchService über fileserver.basedir. Erkennt Änderungen, die nicht über die API
+// kamen, und veröffentlicht sie als FileChangeEvent(external=true).
+@Service
+public class FileWatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileWatchService.class);
+
+    // Watch-Ereignisse werden kurz zurückgehalten, damit die API-Ereignisse derselben Änderung
+    // (die erst nach dem Schreiben veröffentlicht werden) sie unterdrücken können
+    private static final long HOLD_MILLIS = 2000;
+    private static final long SUPPRESS_MILLIS = 10000;
+
+    private record Pending(Path path, Op op, boolean directory, long seenAt) {
+    }
+
+    private final ApplicationEventPublisher publisher;
+    private final boolean enabled;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    // Von der API veränderte Pfade -> Zeitpunkt
+    private final Map<Path, Long> recentApiChanges = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+
+    @Value("${fileserver.basedir}")
+    private String baseDir;
+
+    private Path root;
+    private WatchService watchService;
+    private Thread thread;
+
+    public FileWatchService(ApplicationEventPublisher publisher,
+                            @Value("${fily.watch.enabled:true}") boolean enabled) {
+        this.publisher = publisher;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        root = Paths.get(baseDir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            logger.warn("Dateisystem-Watcher nicht gestartet, Basisverzeichnis fehlt: {}", root);
+            return;
+        }
+        try {
+            watchService = root.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            logger.error("WatchService konnte nicht erstellt werden", e);
+            return;
+        }
+        thread = new Thread(this::run, "fily-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (thread != null) thread.interrupt();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("WatchService schließen fehlgeschlagen", e);
+            }
+        }
+    }
+
+    // Über die API ausgelöste Änderungen merken, damit der Watcher sie nicht doppelt meldet
+    @EventListener
+    public void onApiChange(FileChangeEvent event) {
+        if (event.external() || root == null) return;
+        long now = System.currentTimeMillis();
+        Path userRoot = root.resolve(event.username());
+        recentApiChanges.put(userRoot.resolve(event.path()).normalize(), now);
+        if (event.targetPath() != null) {
+            recentApiChanges.put(userRoot.resolve(event.targetPath()).normalize(), now);
+        }
+    }
+
+    // Für längere API-Vorgänge (z.B. Archiv entpacken): Änderungen unterhalb von dir nicht als extern melden
+    public void expectChanges(Path dir) {
+        recentApiChanges.put(dir.toAbsolutePath().normalize(), System.currentTimeMillis());
+    }
+
+    private void run() {
+        registerTree(root);
+        logger.info("Dateisystem-Watcher gestartet für {} ({} Verzeichnisse)", root, keys.size());
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.poll(500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (key != null) {
+                handle(key);
+            }
+            flush();
+        }
+    }
+
+    private void handle(WatchKey key) {
+        Path dir = keys.get(key);
+        if (dir == null) {
+            key.cancel();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == OVERFLOW) {
+                queue(dir, Op.RESYNC, true, now);
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            // Eigene temporäre Dateien (Uploads, Delta, Tiering) sind keine Änderungen
+            if (DirectoryListing.isInternal(child.getFileName().toString())) continue;
+            if (kind == ENTRY_CREATE) {
+                boolean directory = Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+                if (directory) registerTree(child);
+                queue(child, directory ? Op.MKDIR : Op.CREATE, directory, now);
+            } else if (kind == ENTRY_DELETE) {
+                boolean directory = unregisterTree(child);
+                queue(child, Op.DELETE, directory, now);
+            } else if (kind == ENTRY_MODIFY && !Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                queue(child, Op.MODIFY, false, now);
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    private void queue(Path path, Op op, boolean directory, long now) {
+        synchronized (pending) {
+            String id = op + ":" + path;
+            // Mehrfache MODIFY-Ereignisse während eines Schreibvorgangs zusammenfassen
+            pending.remove(id);
+            pending.put(id, new Pending(path, op, directory, now));
+        }
+    }
+
+    private void flush() {
+        long now = System.currentTimeMillis();
+        List<Pending> ready = new ArrayList<>();
+        synchronized (pending) {
+            Iterator<Pending> it = pending.values().iterator();
+            while (it.hasNext()) {
+                Pending p = it.next();
+                if (now - p.seenAt() < HOLD_MILLIS) continue;
+                it.remove();
+                ready.add(p);
+            }
+        }
+        for (Pending p : ready) {
+            if (isCausedByApi(p.path(), p.seenAt())) continue;
+            FileChangeEvent event = toEvent(p);
+            if (event != null) {
+                publisher.publishEvent(event);
+            }
+        }
+        recentApiChanges.values().removeIf(time -> now - time > SUPPRESS_MILLIS);
+    }
+
+    // Pfad selbst oder ein übergeordneter Ordner wurde kurz zuvor über die API geändert
+    private boolean isCausedByApi(Path path, long seenAt) {
+        for (Path p = path; p != null && p.startsWith(root); p = p.getParent()) {
+            Long time = recentApiChanges.get(p);
+            if (time != null && Math.abs(seenAt - time) <= SUPPRESS_MILLIS) return true;
+        }
+        return false;
+    }
+
+    private FileChangeEvent toEvent(Pending p) {
+        Path relative = root.relativize(p.path());
+        // Ereignisse direkt im Basisverzeichnis (Benutzerordner selbst) ignorieren
+        if (relative.getNameCount() < 2) return null;
+        String username = relative.getName(0).toString();
+        String path = relative.subpath(1, relative.getNameCount()).toString().replace('\\', '/');
+        return new FileChangeEvent(username, p.op(), path, null, p.directory(), true);
+    }
+
+    private void registerTree(Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Verzeichnis konnte nicht überwacht werden: {}", start, e);
+        }
+    }
+
+    // Entfernt Watch-Keys eines gelöschten/verschobenen Ordners; true wenn es ein Ordner war
+    private boolean unregisterTree(Path path) {
+        boolean found = false;
+        Iterator<Map.Entry<WatchKey, Path>> it = keys.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = it.next();
+            if (entry.getValue().startsWith(path)) {
+                entry.getKey().cancel();
+                it.remove();
+                found = true;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,213 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.event.FileChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Server-Sent Events für geöffnete Ordner. Änderungen werden pro Verbindung gesammelt und
+// im Flush-Intervall als ein "changed"-Event verschickt, statt eines Events pro Datei.
+// Verschickt wird auf eigenen Threads (nicht im gemeinsamen @Scheduled-Pool, dort laufen auch
+// stundenlange Jobs wie das Tiering); ein langsamer Client belegt höchstens einen Sende-Thread.
+@Service
+public class LiveUpdateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveUpdateService.class);
+
+    private static final class Subscriber {
+        final String username;
+        final Set<String> dirs;
+        final SseEmitter emitter;
+        final Set<String> dirty = ConcurrentHashMap.newKeySet();
+        int changes;
+        volatile long lastSent = System.currentTimeMillis();
+        // Höchstens ein Sendeauftrag pro Verbindung gleichzeitig
+        final AtomicBoolean sending = new AtomicBoolean();
+
+        Subscriber(String username, Set<String> dirs, SseEmitter emitter) {
+            this.username = username;
+            this.dirs = dirs;
+            this.emitter = emitter;
+        }
+    }
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final long heartbeatMillis;
+    private final int maxPerUser;
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService senders;
+
+    public LiveUpdateService(@Value("${fily.live.timeout-ms:1800000}") long timeoutMillis,
+                             @Value("${fily.live.heartbeat-ms:15000}") long heartbeatMillis,
+                             @Value("${fily.live.max-connections-per-user:20}") int maxPerUser,
+                             @Value("${fily.live.flush-interval-ms:500}") long flushIntervalMillis,
+                             @Value("${fily.live.sender-threads:4}") int senderThreads) {
+        this.timeoutMillis = timeoutMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.maxPerUser = maxPerUser;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fily-live-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread t = new Thread(r, "fily-live-sender");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(10, flushIntervalMillis);
+        ticker.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    // null, wenn der Benutzer schon zu viele offene Verbindungen hat
+    public SseEmitter subscribe(String username, Collection<String> paths) {
+        Set<Subscriber> userSubscribers = subscribers.computeIfAbsent(username, u -> new CopyOnWriteArraySet<>());
+
+        Set<String> dirs = new HashSet<>();
+        for (String path : paths) dirs.add(normalize(path));
+        if (dirs.isEmpty()) dirs.add("");
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(username, dirs, emitter);
+        // Prüfen und Eintragen in einem Schritt, sonst überschreiten parallele Anfragen das Limit
+        synchronized (userSubscribers) {
+            if (userSubscribers.size() >= maxPerUser) {
+                return null;
+            }
+            userSubscribers.add(subscriber);
+        }
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        try {
+            emitter.send(SseEmitter.event().name("subscribed").data(Map.of("paths", dirs)));
+        } catch (IOException e) {
+            remove(subscriber);
+        }
+        logger.debug("SSE-Verbindung für {} geöffnet: {}", username, dirs);
+        return emitter;
+    }
+
+    @EventListener
+    public void onChange(FileChangeEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(event.username());
+        if (userSubscribers == null || userSubscribers.isEmpty()) return;
+
+        // Genau betroffen: der Pfad selbst und sein Elternordner (Quelle und Ziel);
+        // bei Löschen/Verschieben/Resync zusätzlich alle abonnierten Ordner darunter
+        Set<String> exact = new HashSet<>(4);
+        List<String> subtrees = new ArrayList<>(2);
+        boolean structural = switch (event.op()) {
+            case DELETE, MOVE, RENAME, RESYNC -> true;
+            default -> false;
+        };
+        for (String path : new String[]{event.path(), event.targetPath()}) {
+            if (path == null) continue;
+            String normalized = normalize(path);
+            exact.add(normalized);
+            exact.add(parentOf(normalized));
+            if (structural) subtrees.add(normalized);
+        }
+
+        for (Subscriber subscriber : userSubscribers) {
+            for (String dir : subscriber.dirs) {
+                if (exact.contains(dir) || isInside(dir, subtrees)) {
+                    subscriber.dirty.add(dir);
+                    synchronized (subscriber) {
+                        subscriber.changes++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isInside(String dir, List<String> roots) {
+        for (String root : roots) {
+            if (root.isEmpty() || dir.startsWith(root + "/")) return true;
+        }
+        return false;
+    }
+
+    // Gesammelte Änderungen verschicken, sonst gelegentlich Heartbeat (hält Proxies/Verbindung offen)
+    void flush() {
+        long now = System.currentTimeMillis();
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                boolean due = !subscriber.dirty.isEmpty() || now - subscriber.lastSent >= heartbeatMillis;
+                // Hängt der vorige Versand noch (langsamer Client), wird weiter gesammelt
+                if (!due || !subscriber.sending.compareAndSet(false, true)) continue;
+                try {
+                    senders.execute(() -> {
+                        try {
+                            send(subscriber);
+                        } finally {
+                            subscriber.sending.set(false);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    subscriber.sending.set(false);
+                }
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        long now = System.currentTimeMillis();
+        try {
+            if (!subscriber.dirty.isEmpty()) {
+                List<String> dirs = new ArrayList<>(subscriber.dirty);
+                subscriber.dirty.removeAll(dirs);
+                int changes;
+                synchronized (subscriber) {
+                    changes = subscriber.changes;
+                    subscriber.changes = 0;
+                }
+                subscriber.emitter.send(SseEmitter.event().name("changed")
+                        .data(Map.of("paths", dirs, "count", changes)));
+                subscriber.lastSent = now;
+            } else if (now - subscriber.lastSent >= heartbeatMillis) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                subscriber.lastSent = now;
+            }
+        } catch (IOException | IllegalStateException e) {
+            remove(subscriber);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        Set<Subscriber> userSubscribers = subscribers.get(subscriber.username);
+        if (userSubscribers != null && userSubscribers.remove(subscriber)) {
+            logger.debug("SSE-Verbindung für {} geschlossen", subscriber.username);
+        }
+    }
+
+    private static String parentOf(String path) {
+        String normalized = normalize(path);
+        int i = normalized.lastIndexOf('/');
+        return i < 0 ? "" : normalized.substring(0, i);
+    }
+
+    private static String normalize(String path) {
+        String p = path == null ? "" : path.replace('\\', '/');
+        while (p.startsWith("/")) p = p.substring(1);
+        while (p.endsWith("/")) p = p.substring(0, p.length() - 1);
+        return p;
+    }
+}
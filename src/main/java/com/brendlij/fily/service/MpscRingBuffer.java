@@ -0,0 +1,67 @@
+package com.brendlij.fily.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-freier Ringpuffer für viele Produzenten und genau einen Konsumenten.
+// offer() blockiert nie: ist der Puffer voll, wird verworfen und gezählt.
+public final class MpscRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    // Nächste freie Position (Produzenten, CAS) und nächste zu lesende Position (nur der Konsument)
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+
+    // Kapazität wird auf die nächste Zweierpotenz aufgerundet
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public boolean offer(T value) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head >= slots.length()) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.lazySet((int) (t & mask), value);
+        return true;
+    }
+
+    // Nur vom Konsumenten aufrufen; liefert die Zahl entnommener Elemente
+    public int drain(List<T> out, int max) {
+        long h = head;
+        int n = 0;
+        while (n < max) {
+            int i = (int) (h & mask);
+            T value = slots.get(i);
+            if (value == null) break; // Platz reserviert, aber noch nicht geschrieben
+            slots.lazySet(i, null);
+            out.add(value);
+            h++;
+            n++;
+        }
+        head = h;
+        return n;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    public long size() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,135 @@
+package com.brendlij.fily.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Hierarchische Pfad-Sperren über einen festen Satz gestreifter ReadWriteLocks.
+// Wer einen Pfad verändert, hält die Schreibsperre auf den Pfad und Lesesperren auf alle Elternordner.
+// So laufen Änderungen in getrennten Teilbäumen parallel, während z.B. das Löschen eines Ordners
+// auf laufende Uploads darin wartet. Stripes werden immer aufsteigend gesperrt (kein Deadlock).
+@Service
+public class PathLockManager {
+
+    public static class LockTimeoutException extends RuntimeException {
+        public LockTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    public final class Handle implements AutoCloseable {
+        private final List<Lock> locks;
+
+        private Handle(List<Lock> locks) {
+            this.locks = locks;
+        }
+
+        @Override
+        public void close() {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    private final ReentrantReadWriteLock[] stripes;
+    private final long timeoutMillis;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    @Value("${fileserver.basedir}")
+    private String baseDir;
+
+    public PathLockManager(@Value("${fily.locks.stripes:256}") int stripeCount,
+                           @Value("${fily.locks.timeout-ms:30000}") long timeoutMillis) {
+        int size = Integer.highestOneBit(Math.max(16, stripeCount - 1) << 1);
+        this.stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) stripes[i] = new ReentrantReadWriteLock();
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // Schreibsperre auf alle übergebenen Pfade (z.B. Quelle und Ziel beim Verschieben)
+    public Handle lockForWrite(File... files) {
+        Path root = Paths.get(baseDir).toAbsolutePath().normalize();
+        // Stripe -> true = schreiben; Schreiben gewinnt, falls ein Stripe mehrfach vorkommt
+        TreeMap<Integer, Boolean> wanted = new TreeMap<>();
+        for (File file : files) {
+            Path path = file.toPath().toAbsolutePath().normalize();
+            wanted.put(stripe(path), true);
+            for (Path parent = path.getParent(); parent != null && parent.startsWith(root); parent = parent.getParent()) {
+                wanted.putIfAbsent(stripe(parent), false);
+            }
+        }
+
+        List<Lock> acquired = new ArrayList<>(wanted.size());
+        long start = System.nanoTime();
+        boolean waited = false;
+        try {
+            for (Map.Entry<Integer, Boolean> entry : wanted.entrySet()) {
+                ReentrantReadWriteLock rw = stripes[entry.getKey()];
+                Lock lock = entry.getValue() ? rw.writeLock() : rw.readLock();
+                if (!lock.tryLock()) {
+                    waited = true;
+                    long remaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    if (remaining <= 0 || !lock.tryLock(remaining, TimeUnit.MILLISECONDS)) {
+                        timeouts.increment();
+                        throw new LockTimeoutException("Pfad ist gerade gesperrt");
+                    }
+                }
+                acquired.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(acquired);
+            throw new LockTimeoutException("Warten auf Pfadsperre unterbrochen");
+        } catch (RuntimeException e) {
+            release(acquired);
+            throw e;
+        }
+
+        acquisitions.increment();
+        if (waited) {
+            long waitedNanos = System.nanoTime() - start;
+            contended.increment();
+            waitNanos.add(waitedNanos);
+            maxWaitNanos.accumulateAndGet(waitedNanos, Math::max);
+        }
+        return new Handle(acquired);
+    }
+
+    public Map<String, Object> stats() {
+        long contendedCount = contended.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stripes", stripes.length);
+        stats.put("acquisitions", acquisitions.sum());
+        stats.put("contended", contendedCount);
+        stats.put("timeouts", timeouts.sum());
+        stats.put("avgWaitMicros", contendedCount == 0 ? 0 : waitNanos.sum() / contendedCount / 1000);
+        stats.put("maxWaitMicros", maxWaitNanos.get() / 1000);
+        return stats;
+    }
+
+    int stripe(Path path) {
+        int h = path.toString().hashCode();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    private static void release(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) locks.get(i).unlock();
+    }
+}
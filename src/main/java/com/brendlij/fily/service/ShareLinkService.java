@@ -0,0 +1,139 @@
+package com.brendlij.fily.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Zeitlich begrenzte, HMAC-signierte Freigabelinks. Die Prüfung ist zustandslos,
+// nur für Links mit Download-Limit wird ein Zähler im Speicher gehalten.
+@Service
+public class ShareLinkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShareLinkService.class);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public record ShareLink(String id, String username, String path, long expiresAt, int maxDownloads) {
+        public boolean isLimited() {
+            return maxDownloads > 0;
+        }
+    }
+
+    private record Counter(AtomicInteger count, long expiresAt) {
+    }
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger counterWrites = new AtomicInteger();
+
+    @Value("${fileserver.basedir}")
+    private String baseDir;
+
+    public ShareLinkService(@Value("${fily.share.secret:}") String secret) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            // Wie beim JWT-Key: ohne Konfiguration gelten Links nur bis zum Neustart
+            logger.warn("fily.share.secret nicht gesetzt, Freigabelinks werden nach einem Neustart ungültig");
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance("HmacSHA256");
+                m.init(key);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public String createToken(String username, String path, long expiresAt, int maxDownloads) {
+        byte[] idBytes = new byte[9];
+        random.nextBytes(idBytes);
+        String payload = String.join("\n",
+                ENCODER.encodeToString(idBytes), username, path,
+                Long.toString(expiresAt), Integer.toString(Math.max(0, maxDownloads)));
+        String encoded = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return encoded + "." + ENCODER.encodeToString(sign(encoded));
+    }
+
+    // Prüft Signatur und Ablauf; null bei ungültigem oder abgelaufenem Link
+    public ShareLink verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) return null;
+        String encoded = token.substring(0, dot);
+        try {
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(encoded))) return null;
+
+            String[] parts = new String(DECODER.decode(encoded), StandardCharsets.UTF_8).split("\n", -1);
+            if (parts.length != 5) return null;
+            ShareLink link = new ShareLink(parts[0], parts[1], parts[2],
+                    Long.parseLong(parts[3]), Integer.parseInt(parts[4]));
+            if (link.expiresAt() <= System.currentTimeMillis() / 1000) return null;
+            return link;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Zählt einen Download; false wenn das Limit bereits erreicht ist
+    public boolean tryConsumeDownload(ShareLink link) {
+        if (!link.isLimited()) return true;
+        Counter counter = counters.computeIfAbsent(link.id(),
+                id -> new Counter(new AtomicInteger(), link.expiresAt()));
+        if ((counterWrites.incrementAndGet() & 1023) == 0) {
+            purgeExpiredCounters();
+        }
+        int current;
+        do {
+            current = counter.count().get();
+            if (current >= link.maxDownloads()) return false;
+        } while (!counter.count().compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // Freigegebene Datei bzw. Datei innerhalb eines freigegebenen Ordners
+    public File resolve(ShareLink link, String subPath) {
+        Path root = Paths.get(baseDir, link.username()).normalize();
+        Path shared = root.resolve(link.path()).normalize();
+        Path target = subPath == null || subPath.isEmpty() ? shared : shared.resolve(subPath).normalize();
+        if (subPath != null && subPath.contains("..") || !shared.startsWith(root) || !target.startsWith(shared)
+                || DirectoryListing.isInternal(target.getFileName().toString())) {
+            logger.warn("Freigabe: Pfad nicht erlaubt: {}", target);
+            throw new IllegalArgumentException("Pfad ungültig!");
+        }
+        return target.toFile();
+    }
+
+    private byte[] sign(String payload) {
+        return mac.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void purgeExpiredCounters() {
+        long now = System.currentTimeMillis() / 1000;
+        counters.values().removeIf(counter -> counter.expiresAt() <= now);
+    }
+}
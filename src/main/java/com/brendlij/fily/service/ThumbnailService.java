@@ -0,0 +1,190 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.cache.DiskCache;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class ThumbnailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp", "wbmp");
+    // Feste Größenstufen, damit der Cache nicht für jede beliebige Pixelzahl einen Eintrag bekommt
+    private static final int[] SIZES = {64, 128, 256, 512, 1024};
+
+    private final DiskCache cache;
+    private final ThreadPoolExecutor executor;
+    private final int[] pregenerateSizes;
+    private final long timeoutMillis;
+    // Laufende Erzeugungen, damit gleichzeitige Anfragen nur einmal rechnen
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    public ThumbnailService(@Value("${fily.cache.dir:./data/cache}") String cacheDir,
+                            @Value("${fily.thumbnails.cache-max-bytes:536870912}") long cacheMaxBytes,
+                            @Value("${fily.thumbnails.threads:2}") int threads,
+                            @Value("${fily.thumbnails.queue-size:256}") int queueSize,
+                            @Value("${fily.thumbnails.timeout-ms:30000}") long timeoutMillis,
+                            @Value("${fily.thumbnails.pregenerate-sizes:256}") int[] pregenerateSizes) throws IOException {
+        this.cache = new DiskCache(Paths.get(cacheDir, "thumbnails"), cacheMaxBytes);
+        this.pregenerateSizes = pregenerateSizes;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "fily-thumbnail-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static boolean isSupported(File file) {
+        String name = file.getName();
+        int i = name.lastIndexOf('.');
+        return i > 0 && IMAGE_EXTENSIONS.contains(name.substring(i + 1).toLowerCase(Locale.ROOT));
+    }
+
+    // Kleinste Stufe, die mindestens so groß ist wie angefragt
+    public static int normalizeSize(int requested) {
+        for (int size : SIZES) {
+            if (size >= requested) return size;
+        }
+        return SIZES[SIZES.length - 1];
+    }
+
+    // Liefert das JPEG-Vorschaubild; erzeugt es bei Bedarf auf dem Worker-Pool.
+    // RejectedExecutionException / TimeoutException bedeuten: Pool ausgelastet.
+    public byte[] getThumbnail(File source, int requestedSize) throws IOException, TimeoutException, InterruptedException {
+        int size = normalizeSize(requestedSize);
+        String key = cacheKey(source, size);
+
+        File cached = cache.get(key);
+        if (cached != null) {
+            try {
+                return Files.readAllBytes(cached.toPath());
+            } catch (IOException e) {
+                logger.debug("Thumbnail aus Cache nicht lesbar, wird neu erzeugt: {}", key);
+            }
+        }
+
+        CompletableFuture<byte[]> future = submit(key, source, size);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException("Thumbnail konnte nicht erzeugt werden: " + source, cause);
+        }
+    }
+
+    // Nach dem Upload im Hintergrund vorberechnen; bei vollem Pool einfach auslassen
+    public void pregenerate(File source) {
+        if (!isSupported(source)) return;
+        for (int requested : pregenerateSizes) {
+            int size = normalizeSize(requested);
+            String key = cacheKey(source, size);
+            if (cache.get(key) != null) continue;
+            try {
+                submit(key, source, size);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Thumbnail-Pool ausgelastet, Vorberechnung übersprungen: {}", source);
+                return;
+            }
+        }
+    }
+
+    private CompletableFuture<byte[]> submit(String key, File source, int size) {
+        CompletableFuture<byte[]> future = inFlight.computeIfAbsent(key,
+                k -> CompletableFuture.supplyAsync(() -> generate(key, source, size), executor));
+        future.whenComplete((result, error) -> inFlight.remove(key, future));
+        return future;
+    }
+
+    private byte[] generate(String key, File source, int size) {
+        try {
+            long start = System.nanoTime();
+            byte[] jpeg = render(source, size);
+            cache.put(key, out -> out.write(jpeg));
+            logger.debug("Thumbnail {}px für {} in {} ms erzeugt", size, source,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return jpeg;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private byte[] render(File source, int size) throws IOException {
+        BufferedImage image;
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            if (in == null) throw new IOException("Datei nicht lesbar: " + source);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) throw new IOException("Kein ImageReader für " + source);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // Schon beim Dekodieren nur jede n-te Zeile/Spalte lesen, statt 20 MB voll zu laden
+                int subsampling = Math.max(1, longest / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage thumb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumb.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE); // Transparenz (PNG/GIF) auf weiß legen, JPEG hat keinen Alphakanal
+            g.fillRect(0, 0, width, height);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(thumb, "jpg", out)) {
+            throw new IOException("Kein JPEG-Writer verfügbar");
+        }
+        return out.toByteArray();
+    }
+
+    private static String cacheKey(File source, int size) {
+        return DiskCache.key(source.getAbsolutePath(), source.lastModified(), source.length(), size);
+    }
+}
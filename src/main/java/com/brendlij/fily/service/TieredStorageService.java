@@ -0,0 +1,456 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.event.FileChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+
+// Komprimiert selten genutzte Textdateien (Logs, CSV, JSON ...) an Ort und Stelle mit gzip.
+// Die Datei behält Pfad und mtime; welche Dateien komprimiert sind, steht im Index im Speicher,
+// damit der Lesepfad ohne zusätzliche Syscalls auskommt. Ein Indexeintrag gilt nur, solange
+// mtime und Größe auf der Platte dazu passen. Eigene Dateien tragen den gzip-Kommentar "fily-tier",
+// so sind sie auch nach einem touch oder ohne Index wiederzuerkennen.
+@Service
+public class TieredStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredStorageService.class);
+
+    private static final int INDEX_MAGIC = 0x46545231; // "FTR1"
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "log", "txt", "csv", "tsv", "json", "ndjson", "jsonl", "xml", "sql", "md", "yml", "yaml", "html", "htm");
+    private static final byte[] TIER_HEADER = tierHeader();
+
+    public record TierEntry(long logicalSize, long storedSize, long lastModified) {
+    }
+
+    private final Map<String, TierEntry> index = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+    // Dateien, die gerade komprimiert oder entpackt werden (Tausch läuft noch)
+    private final Set<String> swapping = ConcurrentHashMap.newKeySet();
+    private final Path indexFile;
+    private final boolean enabled;
+    private final long coldAfterMillis;
+    private final long minBytes;
+    private final PathLockManager pathLocks;
+    private final FileWatchService fileWatchService;
+    private final boolean needsRecovery;
+    private volatile boolean dirty;
+
+    @Value("${fileserver.basedir}")
+    private String baseDir;
+
+    public TieredStorageService(PathLockManager pathLocks, FileWatchService fileWatchService,
+                                @Value("${fily.tier.enabled:false}") boolean enabled,
+                                @Value("${fily.tier.index-file:./data/tier-index.bin}") String indexFile,
+                                @Value("${fily.tier.cold-after-days:90}") long coldAfterDays,
+                                @Value("${fily.tier.min-bytes:1048576}") long minBytes) {
+        this.pathLocks = pathLocks;
+        this.fileWatchService = fileWatchService;
+        this.enabled = enabled;
+        this.indexFile = Paths.get(indexFile);
+        this.coldAfterMillis = TimeUnit.DAYS.toMillis(coldAfterDays);
+        this.minBytes = minBytes;
+        // Index kaputt oder (bei aktivem Tiering) verschwunden: komprimierte Dateien wiederfinden
+        boolean loaded = load();
+        this.needsRecovery = !loaded || (enabled && !Files.exists(this.indexFile));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverIfNeeded() {
+        if (!needsRecovery) return;
+        Thread thread = new Thread(this::recover, "fily-tier-recover");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saveIfDirty();
+    }
+
+    // Gültiger Indexeintrag oder null (Datei wurde inzwischen ersetzt)
+    public TierEntry compressed(File file) {
+        if (index.isEmpty()) return null;
+        return validate(file.getAbsolutePath(), file);
+    }
+
+    public long logicalSize(File file) {
+        TierEntry entry = compressed(file);
+        return entry != null ? entry.logicalSize() : file.length();
+    }
+
+    public InputStream openLogical(File file) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        if (compressed(file) == null) return in;
+        // Zwischen Öffnen und Prüfen kann getauscht worden sein: maßgeblich ist der geöffnete Inhalt
+        in.mark(TIER_HEADER.length);
+        byte[] head = in.readNBytes(TIER_HEADER.length);
+        in.reset();
+        return Arrays.equals(head, TIER_HEADER) ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    public void recordAccess(File file) {
+        lastAccess.put(file.getAbsolutePath(), System.currentTimeMillis());
+    }
+
+    // Komprimierte Datei wieder entpacken (z.B. vor einem Delta-Upload)
+    public void rehydrate(File file) throws IOException {
+        if (compressed(file) == null) return;
+        Path tmp = file.toPath().resolveSibling(".fily-tier-" + UUID.randomUUID() + ".tmp");
+        String key = file.getAbsolutePath();
+        try (PathLockManager.Handle lock = pathLocks.lockForWrite(file)) {
+            TierEntry entry = compressed(file);
+            if (entry == null) return;
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file), 64 * 1024)) {
+                Files.copy(in, tmp);
+            }
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(entry.lastModified()));
+            swapping.add(key);
+            try {
+                fileWatchService.expectChanges(file.toPath());
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                drop(key);
+            } finally {
+                swapping.remove(key);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        logger.info("Datei entkomprimiert: {}", file);
+    }
+
+    @EventListener
+    public void onChange(FileChangeEvent event) {
+        if (index.isEmpty() && lastAccess.isEmpty()) return;
+        String source = absolutePath(event.username(), event.path());
+        switch (event.op()) {
+            case RENAME, MOVE -> {
+                String target = absolutePath(event.username(), event.targetPath());
+                remapPrefix(index, source, target);
+                remapPrefix(lastAccess, source, target);
+                dirty = true;
+            }
+            case CREATE, MODIFY -> {
+                // Der Watcher meldet auch touch oder das Ersetzen durch uns selbst; solange die Datei
+                // noch zum Eintrag passt (bzw. unsere gzip-Datei ist), bleibt sie komprimiert
+                if (event.external() && !event.directory() && validate(source, new File(source)) != null) return;
+                removePrefix(index, source);
+                removePrefix(lastAccess, source);
+                dirty = true;
+            }
+            case DELETE -> {
+                removePrefix(index, source);
+                removePrefix(lastAccess, source);
+                dirty = true;
+            }
+            default -> { }
+        }
+    }
+
+    // Nächtlicher Lauf: kalte, komprimierbare Dateien in allen Benutzerordnern komprimieren
+    @Scheduled(cron = "${fily.tier.cron:0 30 3 * * *}")
+    public void compressColdFiles() {
+        if (!enabled) return;
+        Path root = Paths.get(baseDir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) return;
+        long now = System.currentTimeMillis();
+        long[] stats = new long[3]; // Dateien, vorher, nachher
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    if (isCandidate(path, attrs, now)) {
+                        try {
+                            long stored = compress(path.toFile(), attrs);
+                            if (stored >= 0) {
+                                stats[0]++;
+                                stats[1] += attrs.size();
+                                stats[2] += stored;
+                            }
+                        } catch (IOException | PathLockManager.LockTimeoutException e) {
+                            logger.warn("Komprimieren fehlgeschlagen: {}", path, e);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Tiering-Lauf abgebrochen", e);
+        }
+        saveIfDirty();
+        logger.info("Tiering: {} Dateien komprimiert, {} -> {} Bytes", stats[0], stats[1], stats[2]);
+    }
+
+    @Scheduled(fixedDelayString = "${fily.tier.save-interval-ms:60000}")
+    public void saveIfDirty() {
+        if (!dirty) return;
+        dirty = false;
+        try {
+            save();
+        } catch (IOException e) {
+            dirty = true;
+            logger.warn("Tiering-Index konnte nicht gespeichert werden", e);
+        }
+    }
+
+    private boolean isCandidate(Path path, BasicFileAttributes attrs, long now) {
+        if (!attrs.isRegularFile() || attrs.size() < minBytes) return false;
+        if (!hasCompressibleName(path)) return false;
+        String key = path.toFile().getAbsolutePath();
+        if (index.containsKey(key)) return false;
+        long lastUsed = Math.max(attrs.lastModifiedTime().toMillis(),
+                Math.max(attrs.lastAccessTime().toMillis(), lastAccess.getOrDefault(key, 0L)));
+        return now - lastUsed >= coldAfterMillis;
+    }
+
+    // Liefert die neue Größe oder -1, wenn es sich nicht lohnt bzw. die Datei sich geändert hat
+    private long compress(File file, BasicFileAttributes attrs) throws IOException {
+        long logical = attrs.size();
+        long mtime = attrs.lastModifiedTime().toMillis();
+        Path tmp = file.toPath().resolveSibling(".fily-tier-" + UUID.randomUUID() + ".tmp");
+        try {
+            try (InputStream in = new FileInputStream(file);
+                 OutputStream out = tierOutput(Files.newOutputStream(tmp))) {
+                in.transferTo(out);
+            }
+            long stored = Files.size(tmp);
+            if (stored > logical * 9 / 10) return -1;
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(mtime));
+
+            // Unter der Pfadsperre prüfen und tauschen, damit kein Upload dazwischen überschrieben wird
+            try (PathLockManager.Handle lock = pathLocks.lockForWrite(file)) {
+                if (file.lastModified() != mtime || file.length() != logical) return -1;
+
+                // Erst Index schreiben, dann Datei ersetzen: ein Absturz dazwischen hinterlässt nur
+                // einen Eintrag, dessen Größe nicht passt und der beim Lesen verworfen wird.
+                // Leser ohne Sperre sehen bis zum Tausch die rohe Datei; validate() verwirft den
+                // Eintrag solange nicht (siehe swapping)
+                String key = file.getAbsolutePath();
+                swapping.add(key);
+                try {
+                    index.put(key, new TierEntry(logical, stored, mtime));
+                    save();
+                    // Der Tausch ist keine externe Änderung (sonst verwirft onChange den Eintrag wieder)
+                    fileWatchService.expectChanges(file.toPath());
+                    Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException | RuntimeException e) {
+                    drop(key);
+                    throw e;
+                } finally {
+                    swapping.remove(key);
+                }
+            }
+            return stored;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private TierEntry validate(String key, File file) {
+        TierEntry entry = index.get(key);
+        if (entry == null) return null;
+        long mtime = file.lastModified();
+        long length = file.length();
+        if (entry.lastModified() == mtime && entry.storedSize() == length) return entry;
+        // Tausch läuft: je nach Stand ist die Datei noch roh oder schon komprimiert, verworfen wird nichts
+        if (swapping.contains(key)) {
+            return entry.storedSize() == length && isTierFile(file) ? entry : null;
+        }
+        // Nur die mtime weicht ab (touch, Rundung beim Kopieren): Inhalt prüfen statt verwerfen
+        if (entry.storedSize() == length && isTierFile(file)) {
+            TierEntry updated = new TierEntry(entry.logicalSize(), length, mtime);
+            index.put(key, updated);
+            dirty = true;
+            return updated;
+        }
+        drop(key);
+        return null;
+    }
+
+    // Ohne (lesbaren) Index: alle Dateien mit unserem gzip-Header wieder eintragen
+    void recover() {
+        Path root = Paths.get(baseDir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) return;
+        int[] found = new int[1];
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    File file = path.toFile();
+                    String key = file.getAbsolutePath();
+                    if (attrs.isRegularFile() && hasCompressibleName(path) && !index.containsKey(key) && isTierFile(file)) {
+                        try (InputStream in = new GZIPInputStream(new FileInputStream(file), 64 * 1024)) {
+                            long logical = in.transferTo(OutputStream.nullOutputStream());
+                            index.put(key, new TierEntry(logical, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                            found[0]++;
+                        } catch (IOException e) {
+                            logger.warn("Komprimierte Datei nicht lesbar: {}", path, e);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Tiering-Wiederherstellung abgebrochen", e);
+        }
+        if (found[0] > 0) {
+            dirty = true;
+            saveIfDirty();
+        }
+        logger.info("Tiering-Index wiederhergestellt: {} komprimierte Dateien gefunden", found[0]);
+    }
+
+    private static boolean hasCompressibleName(Path path) {
+        String name = path.getFileName().toString();
+        if (name.startsWith(".fily-")) return false;
+        int i = name.lastIndexOf('.');
+        return i > 0 && COMPRESSIBLE_EXTENSIONS.contains(name.substring(i + 1).toLowerCase(Locale.ROOT));
+    }
+
+    static boolean isTierFile(File file) {
+        byte[] head = new byte[TIER_HEADER.length];
+        try (InputStream in = new FileInputStream(file)) {
+            return in.readNBytes(head, 0, head.length) == head.length && Arrays.equals(head, TIER_HEADER);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // gzip-Header mit gesetztem FCOMMENT-Flag und Kommentar "fily-tier"
+    private static byte[] tierHeader() {
+        byte[] comment = "fily-tier".getBytes(StandardCharsets.US_ASCII);
+        byte[] header = new byte[10 + comment.length + 1];
+        header[0] = 0x1f;
+        header[1] = (byte) 0x8b;
+        header[2] = 8;      // deflate
+        header[3] = 0x10;   // FCOMMENT
+        header[8] = 2;      // maximale Kompression
+        header[9] = (byte) 0xff;
+        System.arraycopy(comment, 0, header, 10, comment.length);
+        return header;
+    }
+
+    static OutputStream tierOutput(OutputStream target) throws IOException {
+        target.write(TIER_HEADER);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        CRC32 crc = new CRC32();
+        return new DeflaterOutputStream(target, deflater, 64 * 1024) {
+            private long size;
+            private boolean closed;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                super.write(b, off, len);
+                crc.update(b, off, len);
+                size += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                closed = true;
+                try {
+                    finish();
+                    writeIntLE(out, (int) crc.getValue());
+                    writeIntLE(out, (int) size);
+                    out.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private void drop(String key) {
+        if (index.remove(key) != null) dirty = true;
+    }
+
+    private String absolutePath(String username, String path) {
+        return Paths.get(baseDir, username, path).normalize().toFile().getAbsolutePath();
+    }
+
+    private static <V> void removePrefix(Map<String, V> map, String path) {
+        String prefix = path + File.separator;
+        map.keySet().removeIf(k -> k.equals(path) || k.startsWith(prefix));
+    }
+
+    private static <V> void remapPrefix(Map<String, V> map, String source, String target) {
+        String prefix = source + File.separator;
+        for (String key : new ArrayList<>(map.keySet())) {
+            if (key.equals(source) || key.startsWith(prefix)) {
+                V value = map.remove(key);
+                if (value != null) map.put(target + key.substring(source.length()), value);
+            }
+        }
+    }
+
+    private boolean load() {
+        if (!Files.exists(indexFile)) return true;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC) throw new IOException("Unbekanntes Format");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                index.put(in.readUTF(), new TierEntry(in.readLong(), in.readLong(), in.readLong()));
+            }
+            logger.info("Tiering-Index geladen: {} komprimierte Dateien", count);
+            return true;
+        } catch (IOException e) {
+            logger.error("Tiering-Index {} nicht lesbar, wird aus den Dateien wiederhergestellt", indexFile, e);
+            index.clear();
+            return false;
+        }
+    }
+
+    private synchronized void save() throws IOException {
+        Path parent = indexFile.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Map<String, TierEntry> snapshot = new HashMap<>(index);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, TierEntry> e : snapshot.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().logicalSize());
+                out.writeLong(e.getValue().storedSize());
+                out.writeLong(e.getValue().lastModified());
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -1,30 +1,53 @@
 package com.brendlij.fily.service;
 
 import com.brendlij.fily.model.User;
+import com.brendlij.fily.model.UserSummary;
 import com.brendlij.fily.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 public class UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
+    public record ProvisionRequest(String username, String password, boolean isAdmin) {
+    }
+
+    // status: created, exists, duplicate, invalid, error
+    public record ProvisionResult(String username, String status) {
+    }
+
     private final UserRepository userRepository;
     private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    // BCrypt ist absichtlich teuer; eigener Pool, damit Massenanlagen den Common-Pool nicht blockieren
+    private final ForkJoinPool provisioningPool;
 
     @Value("${fileserver.basedir}")
     private String baseDir;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository,
+                       @Value("${fily.users.provisioning-threads:0}") int provisioningThreads) {
         this.userRepository = userRepository;
+        this.provisioningPool = new ForkJoinPool(provisioningThreads > 0
+                ? provisioningThreads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        provisioningPool.shutdownNow();
     }
 
     public boolean createUser(String username, String password, boolean isAdmin) {
@@ -65,6 +88,88 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    public boolean usersExist() {
+        return userRepository.existsByIdNotNull();
+    }
+
+    // Seite der User nach Namen sortiert, optional nur mit Namenspräfix
+    public Page<UserSummary> listUsers(String prefix, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by("username"));
+        if (prefix == null || prefix.isEmpty()) {
+            return userRepository.findSummaries(pageRequest);
+        }
+        String escaped = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return userRepository.findSummariesByPrefix(escaped, pageRequest);
+    }
+
+    // Viele User auf einmal anlegen: eine Existenzabfrage für alle, Hashes parallel,
+    // ein saveAll in einer Transaktion (JDBC-Batches über hibernate.jdbc.batch_size), Ordner parallel
+    public List<ProvisionResult> createUsers(List<ProvisionRequest> requests) {
+        String[] status = new String[requests.size()];
+        Map<String, Integer> firstIndex = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ProvisionRequest request = requests.get(i);
+            if (request == null || !isValidUsername(request.username())
+                    || request.password() == null || request.password().isEmpty()) {
+                status[i] = "invalid";
+            } else if (firstIndex.putIfAbsent(request.username(), i) != null) {
+                status[i] = "duplicate";
+            }
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        if (!firstIndex.isEmpty()) {
+            Set<String> existing = new HashSet<>(userRepository.findExistingUsernames(firstIndex.keySet()));
+            for (Map.Entry<String, Integer> entry : firstIndex.entrySet()) {
+                if (existing.contains(entry.getKey())) status[entry.getValue()] = "exists";
+                else pending.add(entry.getValue());
+            }
+        }
+        Collections.sort(pending);
+
+        if (!pending.isEmpty()) {
+            List<User> users = provisioningPool.submit(() -> pending.parallelStream().map(i -> {
+                ProvisionRequest request = requests.get(i);
+                User user = new User();
+                user.setUsername(request.username());
+                user.setPasswordHash(passwordEncoder.encode(request.password()));
+                user.setAdmin(request.isAdmin());
+                return user;
+            }).toList()).join();
+
+            try {
+                userRepository.saveAll(users);
+            } catch (DataIntegrityViolationException e) {
+                // z.B. ein gleichzeitig angelegter Name: die ganze Transaktion ist zurückgerollt
+                logger.warn("Bulk create failed, nothing saved: {}", e.getMessage());
+                pending.forEach(i -> status[i] = "error");
+                pending.clear();
+            }
+
+            provisioningPool.submit(() -> pending.parallelStream().forEach(i -> {
+                File userFolder = new File(baseDir, requests.get(i).username());
+                if (!userFolder.exists() && !userFolder.mkdirs()) {
+                    logger.warn("Failed to create user folder at {}", userFolder.getAbsolutePath());
+                }
+            })).join();
+            pending.forEach(i -> status[i] = "created");
+        }
+        logger.info("Bulk create: {} of {} users created", pending.size(), requests.size());
+
+        List<ProvisionResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            ProvisionRequest request = requests.get(i);
+            results.add(new ProvisionResult(request != null ? request.username() : null, status[i]));
+        }
+        return results;
+    }
+
+    // Der Name wird zum Ordnernamen unter basedir
+    private static boolean isValidUsername(String username) {
+        return username != null && !username.isBlank() && username.length() <= 255
+                && !username.contains("..") && !username.contains("/") && !username.contains("\\");
+    }
+
     public boolean deleteUserById(Long id) {
         if (userRepository.existsById(id)) {
             userRepository.deleteById(id);
@@ -0,0 +1,15 @@
+-- Audit-Tabelle (siehe AuditEvent). Wird beim Start von AuditLog ausgeführt, damit sie auch in
+-- bestehenden Datenbanken ohne Schema-Abgleich (faststart, ddl-auto=none) vorhanden ist.
+create table if not exists audit_events (
+    id bigint generated by default as identity primary key,
+    occurred_at bigint not null,
+    username varchar(100) not null,
+    op varchar(50) not null,
+    path varchar(1024),
+    target_path varchar(1024),
+    bytes bigint not null,
+    duration_micros bigint not null,
+    status integer not null
+);
+create index if not exists idx_audit_user_time on audit_events (username, occurred_at);
+create index if not exists idx_audit_time on audit_events (occurred_at);
@@ -0,0 +1,137 @@
+package com.brendlij.fily.cache;
+
+import com.brendlij.fily.event.FileChangeEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentCacheTest {
+
+    @TempDir
+    Path tmp;
+
+    private File write(String name, String content) throws IOException {
+        Path file = tmp.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        file.toFile().setLastModified(1_700_000_000_000L);
+        return file.toFile();
+    }
+
+    private static String text(ContentCache.Entry entry) {
+        byte[] bytes = new byte[entry.data().remaining()];
+        entry.data().duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void admitsOnSecondMissAndHitsAfterwards() throws IOException {
+        ContentCache cache = new ContentCache(1 << 20, 1024, false, 100);
+        File file = write("notes.txt", "hallo");
+
+        assertNull(cache.get(file));
+        // Erster Fehlgriff: nur im Doorkeeper vermerkt
+        assertNull(cache.load(file, "text/plain"));
+        assertNull(cache.get(file));
+
+        ContentCache.Entry loaded = cache.load(file, "text/plain");
+        assertNotNull(loaded);
+        assertEquals("hallo", text(loaded));
+        assertEquals("text/plain", loaded.contentType());
+        assertEquals(ContentCache.etag(file.lastModified(), file.length()), loaded.etag());
+
+        assertSame(loaded, cache.get(file));
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(2L, cache.stats().get("misses"));
+        assertEquals(1L, cache.stats().get("admissions"));
+        assertEquals(1, cache.stats().get("entries"));
+    }
+
+    @Test
+    void doorkeeperForgetsOldestCandidates() throws IOException {
+        ContentCache cache = new ContentCache(1 << 20, 1024, false, 1);
+        File a = write("a.txt", "a");
+        File b = write("b.txt", "b");
+
+        assertNull(cache.load(a, "text/plain"));
+        // b verdrängt a aus dem Doorkeeper, a zählt wieder als erster Fehlgriff
+        assertNull(cache.load(b, "text/plain"));
+        assertNull(cache.load(a, "text/plain"));
+        assertNotNull(cache.load(a, "text/plain"));
+    }
+
+    @Test
+    void changedMtimeOrSizeInvalidates() throws IOException {
+        ContentCache cache = new ContentCache(1 << 20, 1024, false, 100);
+        File file = write("data.csv", "1,2,3");
+        cache.load(file, "text/csv");
+        assertNotNull(cache.load(file, "text/csv"));
+
+        file.setLastModified(1_700_000_100_000L);
+        assertNull(cache.get(file));
+        assertEquals(1L, cache.stats().get("invalidations"));
+        assertEquals(0L, cache.stats().get("bytes"));
+
+        cache.load(file, "text/csv");
+        assertNotNull(cache.load(file, "text/csv"));
+        // Gleiche mtime, andere Größe
+        Files.writeString(file.toPath(), "1,2,3,4");
+        file.setLastModified(1_700_000_100_000L);
+        assertNull(cache.get(file));
+    }
+
+    @Test
+    void rejectsLargeEntriesAndEvictsLeastRecentlyUsed() throws IOException {
+        ContentCache cache = new ContentCache(10, 8, false, 100);
+        File big = write("big.txt", "123456789");
+        File a = write("a.txt", "aaaa");
+        File b = write("b.txt", "bbbb");
+        File c = write("c.txt", "cccc");
+
+        cache.load(big, "text/plain");
+        assertNull(cache.load(big, "text/plain"));
+
+        for (File f : new File[]{a, b}) {
+            cache.load(f, "text/plain");
+            assertNotNull(cache.load(f, "text/plain"));
+        }
+        assertNotNull(cache.get(a));
+        // a wurde zuletzt benutzt, also fällt b heraus
+        cache.load(c, "text/plain");
+        assertNotNull(cache.load(c, "text/plain"));
+
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+        assertEquals(1L, cache.stats().get("evictions"));
+        assertEquals(8L, cache.stats().get("bytes"));
+    }
+
+    @Test
+    void changeEventsDropFilesAndFolders() throws IOException {
+        ContentCache cache = new ContentCache(1 << 20, 1024, false, 100);
+        ReflectionTestUtils.setField(cache, "baseDir", tmp.toString());
+        File inside = write("alice/docs/a.txt", "a");
+        File sibling = write("alice/docs2/b.txt", "b");
+        for (File f : new File[]{inside, sibling}) {
+            cache.load(f, "text/plain");
+            cache.load(f, "text/plain");
+        }
+
+        cache.onChange(FileChangeEvent.of("alice", FileChangeEvent.Op.DELETE, "docs", true));
+
+        assertNull(cache.get(inside));
+        assertNotNull(cache.get(sibling));
+
+        cache.onChange(FileChangeEvent.moved("alice", FileChangeEvent.Op.RENAME, "other.txt", "docs2/b.txt", false));
+        assertNull(cache.get(sibling));
+    }
+}
@@ -0,0 +1,121 @@
+package com.brendlij.fily.security;
+
+import com.brendlij.fily.service.DirectoryListing;
+import com.brendlij.fily.service.FileWatchService;
+import com.brendlij.fily.service.PathLockManager;
+import com.brendlij.fily.service.ShareLinkService;
+import com.brendlij.fily.service.TieredStorageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShareLinkFilterTest {
+
+    @TempDir
+    Path tmp;
+
+    private ShareLinkService shareLinks;
+    private ShareLinkFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(tmp.resolve("files/anna/docs"));
+        Files.writeString(tmp.resolve("files/anna/docs/a.txt"), "hallo");
+        Files.writeString(tmp.resolve("files/anna/geheim.txt"), "privat");
+        Files.writeString(tmp.resolve("files/anna/docs/.fily-upload-1.tmp"), "halb");
+
+        String baseDir = tmp.resolve("files").toString();
+        shareLinks = new ShareLinkService("geheim");
+        ReflectionTestUtils.setField(shareLinks, "baseDir", baseDir);
+        PathLockManager locks = new PathLockManager(16, 1000);
+        ReflectionTestUtils.setField(locks, "baseDir", baseDir);
+        TieredStorageService tiered = new TieredStorageService(locks, new FileWatchService(event -> { }, false),
+                false, tmp.resolve("tier-index.bin").toString(), 90, 1 << 20);
+        filter = new ShareLinkFilter(shareLinks, tiered, new DirectoryListing(tiered), new ObjectMapper());
+    }
+
+    private String token(String path, int maxDownloads) {
+        return shareLinks.createToken("anna", path, System.currentTimeMillis() / 1000 + 3600, maxDownloads);
+    }
+
+    private MockHttpServletResponse get(String token, String path, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", ShareLinkFilter.PREFIX + token);
+        if (path != null) request.setParameter("path", path);
+        if (ifNoneMatch != null) request.addHeader("If-None-Match", ifNoneMatch);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void unlimitedLinkIsPubliclyCacheable() throws Exception {
+        String token = token("docs/a.txt", 0);
+
+        MockHttpServletResponse response = get(token, null, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("hallo", response.getContentAsString(StandardCharsets.UTF_8));
+        String cacheControl = response.getHeader("Cache-Control");
+        assertTrue(cacheControl.startsWith("public, max-age="), cacheControl);
+        assertTrue(cacheControl.endsWith(", immutable"), cacheControl);
+
+        MockHttpServletResponse revalidated = get(token, null, response.getHeader("ETag"));
+        assertEquals(304, revalidated.getStatus());
+    }
+
+    @Test
+    void limitedLinkIsNotStoredAndCountsDownloads() throws Exception {
+        String token = token("docs/a.txt", 1);
+
+        MockHttpServletResponse first = get(token, null, null);
+        assertEquals(200, first.getStatus());
+        assertEquals("private, no-store", first.getHeader("Cache-Control"));
+
+        // Kein 304 für begrenzte Links, sonst würde am Zähler vorbei ausgeliefert
+        MockHttpServletResponse second = get(token, null, first.getHeader("ETag"));
+        assertEquals(410, second.getStatus());
+    }
+
+    @Test
+    void rejectsTamperedAndExpiredTokens() throws Exception {
+        String token = token("docs/a.txt", 0);
+        assertEquals(404, get(token.replace('.', 'x'), null, null).getStatus());
+        assertEquals(404, get("A" + token, null, null).getStatus());
+
+        String expired = shareLinks.createToken("anna", "docs/a.txt", System.currentTimeMillis() / 1000 - 5, 0);
+        assertEquals(404, get(expired, null, null).getStatus());
+    }
+
+    @Test
+    void staysInsideSharedFolder() throws Exception {
+        String token = token("docs", 0);
+
+        assertEquals(400, get(token, "../geheim.txt", null).getStatus());
+        assertEquals(400, get(token, ".fily-upload-1.tmp", null).getStatus());
+        assertEquals("hallo", get(token, "a.txt", null).getContentAsString(StandardCharsets.UTF_8));
+
+        String listing = get(token, null, null).getContentAsString(StandardCharsets.UTF_8);
+        assertTrue(listing.contains("\"a.txt\""), listing);
+        assertFalse(listing.contains(".fily-"), listing);
+        assertFalse(listing.contains("geheim"), listing);
+    }
+
+    @Test
+    void rejectsWritingMethods() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", ShareLinkFilter.PREFIX + token("docs", 0));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        assertEquals(405, response.getStatus());
+    }
+}
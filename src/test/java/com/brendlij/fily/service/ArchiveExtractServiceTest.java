@@ -0,0 +1,226 @@
+package com.brendlij.fily.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveExtractServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private final ArchiveExtractService service =
+            new ArchiveExtractService(1000, 1 << 20, 1 << 20, 1024, 1 << 20, 2);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void extractsPlainUstarEntries() throws Exception {
+        Tar tar = new Tar().directory("docs/").file("docs/a.txt", "hallo").file("b.txt", "welt");
+
+        ArchiveExtractService.Result result = extract(tar);
+
+        assertEquals(2, result.files());
+        assertEquals("hallo", read("target/docs/a.txt"));
+        assertEquals("welt", read("target/b.txt"));
+        assertTrue(result.skipped().isEmpty());
+    }
+
+    @Test
+    void usesGnuLongNames() throws Exception {
+        String longName = "tief/" + "x".repeat(150) + "/datei.txt";
+        Tar tar = new Tar().entry("././@LongLink", 'L', (longName + "\0").getBytes(StandardCharsets.UTF_8))
+                .file(longName.substring(0, 99), "lang");
+
+        ArchiveExtractService.Result result = extract(tar);
+
+        assertEquals(1, result.files());
+        assertEquals("lang", read("target/" + longName));
+    }
+
+    @Test
+    void usesPaxPath() throws Exception {
+        String path = "pax/" + "langer-name-".repeat(12) + ".txt";
+        String record = " path=" + path + "\n";
+        int length = record.getBytes(StandardCharsets.UTF_8).length;
+        // Die Längenangabe zählt sich selbst mit
+        int total = length + String.valueOf(length).length();
+        total = length + String.valueOf(total).length();
+        byte[] pax = (total + record).getBytes(StandardCharsets.UTF_8);
+        Tar tar = new Tar().entry("PaxHeaders/x", 'x', pax).file("kurz.txt", "pax");
+
+        extract(tar);
+
+        assertEquals("pax", read("target/" + path));
+        assertFalse(Files.exists(tmp.resolve("user/target/kurz.txt")));
+    }
+
+    @Test
+    void skipsParentTraversalEntries() throws Exception {
+        Tar tar = new Tar().file("../ausbruch.txt", "böse").file("ok/../../auch.txt", "böse").file("gut.txt", "gut");
+
+        ArchiveExtractService.Result result = extract(tar);
+
+        assertEquals(1, result.files());
+        assertEquals(List.of("../ausbruch.txt", "ok/../../auch.txt"), result.skipped());
+        assertFalse(Files.exists(tmp.resolve("user/ausbruch.txt")));
+        assertFalse(Files.exists(tmp.resolve("auch.txt")));
+        assertEquals("gut", read("target/gut.txt"));
+    }
+
+    @Test
+    void countsOnlyCreatedDirectories() throws Exception {
+        Files.createDirectories(tmp.resolve("user/target/vorhanden"));
+        Tar tar = new Tar().file("vorhanden/a.txt", "a").file("neu/tief/b.txt", "b");
+
+        ArchiveExtractService.Result result = extract(tar);
+
+        assertEquals(2, result.directories());
+    }
+
+    @Test
+    void stagesWithoutTouchingTargetUntilCommit() throws Exception {
+        Path userRoot = tmp.resolve("user");
+        Tar tar = new Tar().file("a/b.txt", "b");
+
+        ArchiveExtractService.Staged staged = service.stage(userRoot, userRoot.resolve("target"),
+                new ByteArrayInputStream(tar.finish()), ArchiveExtractService.Format.TAR);
+        assertFalse(Files.exists(userRoot.resolve("target")));
+        assertTrue(staged.staging().getFileName().toString().startsWith(".fily-extract-"));
+
+        ArchiveExtractService.Result result = service.commit(staged, null);
+        service.discard(staged);
+
+        assertEquals(1, result.files());
+        assertEquals(2, result.directories());
+        assertEquals("b", read("target/a/b.txt"));
+        assertFalse(Files.exists(staged.staging()));
+    }
+
+    @Test
+    void rejectsDuplicatesAndNameClashes() throws Exception {
+        assertThrows(ArchiveExtractService.ArchiveException.class,
+                () -> extract(new Tar().file("doppelt.txt", "1").file("doppelt.txt", "2")));
+        assertThrows(ArchiveExtractService.ArchiveException.class,
+                () -> extract(new Tar().file("a", "datei").file("a/b.txt", "b")));
+        assertThrows(ArchiveExtractService.ArchiveException.class,
+                () -> extract(new Tar().directory("c/").file("c", "datei")));
+
+        // Konflikt mit vorhandenem Inhalt des Zielordners
+        Files.createDirectories(tmp.resolve("user/target"));
+        Files.writeString(tmp.resolve("user/target/vorhanden"), "datei");
+        assertThrows(ArchiveExtractService.ArchiveException.class,
+                () -> extract(new Tar().file("vorhanden/x.txt", "x")));
+
+        try (Stream<Path> files = Files.list(tmp.resolve("user"))) {
+            assertEquals(List.of("target"), files.map(p -> p.getFileName().toString()).toList());
+        }
+    }
+
+    @Test
+    void capsReportedSkippedEntries() throws Exception {
+        Tar tar = new Tar();
+        for (int i = 0; i < 150; i++) {
+            tar.file("../weg-" + i + ".txt", "x");
+        }
+
+        ArchiveExtractService.Result result = extract(tar);
+
+        assertEquals(0, result.files());
+        assertEquals(100, result.skipped().size());
+        assertEquals(150, result.skippedCount());
+    }
+
+    @Test
+    void extractsStreamedZipEntriesWithoutSize() throws Exception {
+        byte[] large = "große Datei\n".repeat(500).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // ZipOutputStream schreibt DEFLATED-Einträge mit Data Descriptor: Größe beim Lesen unbekannt
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("klein.txt"));
+            zip.write("klein".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("ordner/gross.txt"));
+            zip.write(large);
+        }
+        Path userRoot = tmp.resolve("user");
+        Files.createDirectories(userRoot);
+
+        ArchiveExtractService.Result result = service.extract(userRoot, userRoot.resolve("target"),
+                new ByteArrayInputStream(bytes.toByteArray()), ArchiveExtractService.Format.ZIP, null);
+
+        assertEquals(2, result.files());
+        assertEquals("klein", read("target/klein.txt"));
+        assertArrayEquals(large, Files.readAllBytes(tmp.resolve("user/target/ordner/gross.txt")));
+    }
+
+    private ArchiveExtractService.Result extract(Tar tar) throws Exception {
+        Path userRoot = tmp.resolve("user");
+        Files.createDirectories(userRoot);
+        return service.extract(userRoot, userRoot.resolve("target"), new ByteArrayInputStream(tar.finish()),
+                ArchiveExtractService.Format.TAR, null);
+    }
+
+    private String read(String path) throws IOException {
+        return Files.readString(tmp.resolve("user").resolve(path), StandardCharsets.UTF_8);
+    }
+
+    // Minimaler ustar-Schreiber für die Tests
+    private static final class Tar {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Tar file(String name, String content) throws IOException {
+            return entry(name, '0', content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Tar directory(String name) throws IOException {
+            return entry(name, '5', new byte[0]);
+        }
+
+        Tar entry(String name, char type, byte[] data) throws IOException {
+            byte[] header = new byte[512];
+            put(header, 0, 100, name);
+            put(header, 100, 8, "0000644");
+            put(header, 108, 8, "0000000");
+            put(header, 116, 8, "0000000");
+            put(header, 124, 12, String.format("%011o", data.length));
+            put(header, 136, 12, String.format("%011o", 0));
+            header[156] = (byte) type;
+            put(header, 257, 6, "ustar");
+            put(header, 263, 2, "00");
+            for (int i = 148; i < 156; i++) header[i] = ' ';
+            int sum = 0;
+            for (byte b : header) sum += b & 0xff;
+            put(header, 148, 7, String.format("%06o", sum));
+            out.write(header);
+            out.write(data);
+            out.write(new byte[(512 - data.length % 512) % 512]);
+            return this;
+        }
+
+        byte[] finish() {
+            out.writeBytes(new byte[1024]);
+            return out.toByteArray();
+        }
+
+        private static void put(byte[] header, int offset, int length, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+        }
+    }
+}
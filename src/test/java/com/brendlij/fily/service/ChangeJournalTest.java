@@ -0,0 +1,128 @@
+package com.brendlij.fily.service;
+
+import com.brendlij.fily.event.FileChangeEvent;
+import com.brendlij.fily.event.FileChangeEvent.Op;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeJournalTest {
+
+    @TempDir
+    Path tmp;
+
+    private ChangeJournal journal(int recent) throws IOException {
+        // kompaktieren ab mehr als 10 Einträgen, danach bleiben die letzten 4
+        return new ChangeJournal(tmp.toString(), recent, 10, 4);
+    }
+
+    private static void append(ChangeJournal journal, int count) throws IOException {
+        for (int i = 1; i <= count; i++) {
+            journal.append(FileChangeEvent.of("anna", Op.CREATE, "datei-" + i + ".txt", false));
+        }
+    }
+
+    @Test
+    void returnsChangesAfterCursor() throws IOException {
+        ChangeJournal journal = journal(100);
+        append(journal, 5);
+
+        ChangeJournal.ChangeSet set = journal.changesSince("anna", 2, 2);
+        assertEquals(List.of(3L, 4L), seqs(set));
+        assertEquals(4, set.cursor());
+        assertTrue(set.hasMore());
+        assertFalse(set.resync());
+
+        ChangeJournal.ChangeSet rest = journal.changesSince("anna", set.cursor(), 100);
+        assertEquals(List.of(5L), seqs(rest));
+        assertFalse(rest.hasMore());
+    }
+
+    @Test
+    void compactionRaisesFloorAndForcesResync() throws IOException {
+        ChangeJournal journal = journal(100);
+        append(journal, 12);
+        journal.compact();
+
+        ChangeJournal.ChangeSet stale = journal.changesSince("anna", 3, 100);
+        assertTrue(stale.resync());
+        assertEquals(12, stale.cursor());
+        assertTrue(stale.changes().isEmpty());
+
+        assertEquals(List.of(9L, 10L, 11L, 12L), seqs(journal.changesSince("anna", 8, 100)));
+    }
+
+    @Test
+    void floorSurvivesReloadAndDiskReads() throws IOException {
+        ChangeJournal journal = journal(100);
+        append(journal, 12);
+        journal.compact();
+
+        // Neu laden, nur 2 Einträge im Speicher: ältere kommen aus der Datei
+        ChangeJournal reloaded = journal(2);
+        assertTrue(reloaded.changesSince("anna", 7, 100).resync());
+        assertEquals(List.of(9L, 10L, 11L, 12L), seqs(reloaded.changesSince("anna", 8, 100)));
+
+        reloaded.append(FileChangeEvent.of("anna", Op.DELETE, "datei-1.txt", false));
+        assertEquals(List.of(13L), seqs(reloaded.changesSince("anna", 12, 100)));
+    }
+
+    @Test
+    void cursorAheadOfJournalForcesResync() throws IOException {
+        ChangeJournal journal = journal(100);
+        append(journal, 3);
+        ChangeJournal.ChangeSet set = journal.changesSince("anna", 99, 100);
+        assertTrue(set.resync());
+        assertEquals(3, set.cursor());
+    }
+
+    @Test
+    void repeatedModifyAfterConsumedCursorIsNotLost() throws IOException {
+        ChangeJournal journal = journal(100);
+        journal.append(FileChangeEvent.of("anna", Op.MODIFY, "notiz.md", false));
+        long cursor = journal.changesSince("anna", 0, 100).cursor();
+
+        journal.append(FileChangeEvent.of("anna", Op.MODIFY, "notiz.md", false));
+        ChangeJournal.ChangeSet set = journal.changesSince("anna", cursor, 100);
+        assertEquals(List.of(2L), seqs(set));
+
+        // Beim Lesen werden direkt aufeinanderfolgende MODIFY zusammengefasst
+        journal.append(FileChangeEvent.of("anna", Op.MODIFY, "notiz.md", false));
+        ChangeJournal.ChangeSet all = journal.changesSince("anna", 0, 100);
+        assertEquals(List.of(3L), seqs(all));
+        assertEquals(3, all.cursor());
+    }
+
+    @Test
+    void tornLastLineIsDroppedOnLoad() throws IOException {
+        append(journal(100), 3);
+        // Absturz mitten im Schreiben: halbe Zeile ohne \n, endet in einem halben UTF-8-Zeichen
+        byte[] torn = "4\t1700000000000\tMODIFY\t0\t0\tnotiz-\u00e4".getBytes(StandardCharsets.UTF_8);
+        Files.write(tmp.resolve("anna.log"), Arrays.copyOf(torn, torn.length - 1), StandardOpenOption.APPEND);
+
+        ChangeJournal reloaded = journal(100);
+        assertEquals(List.of(1L, 2L, 3L), seqs(reloaded.changesSince("anna", 0, 100)));
+
+        reloaded.append(FileChangeEvent.of("anna", Op.DELETE, "datei-1.txt", false));
+        assertEquals(List.of(1L, 2L, 3L, 4L), seqs(journal(100).changesSince("anna", 0, 100)));
+    }
+
+    @Test
+    void onChangeNeverThrows() throws IOException {
+        ChangeJournal journal = journal(100);
+        assertDoesNotThrow(() -> journal.onChange(FileChangeEvent.of("../fremd", Op.CREATE, "x.txt", false)));
+    }
+
+    private static List<Long> seqs(ChangeJournal.ChangeSet set) {
+        return set.changes().stream().map(ChangeJournal.Entry::seq).toList();
+    }
+}
@@ -0,0 +1,46 @@
+package com.brendlij.fily.service;
+
+import org.junit.jupiter.api.Test;
+
+import static com.brendlij.fily.service.CompressionService.Encoding.DEFLATE;
+import static com.brendlij.fily.service.CompressionService.Encoding.GZIP;
+import static com.brendlij.fily.service.CompressionService.negotiate;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionServiceTest {
+
+    @Test
+    void prefersGzipOnTies() {
+        assertEquals(GZIP, negotiate("gzip, deflate"));
+        assertEquals(GZIP, negotiate("deflate, gzip"));
+        assertEquals(GZIP, negotiate("gzip;q=0.8, deflate;q=0.8"));
+        assertEquals(GZIP, negotiate("*"));
+    }
+
+    @Test
+    void followsClientQualities() {
+        assertEquals(DEFLATE, negotiate("gzip;q=0.5, deflate"));
+        assertEquals(DEFLATE, negotiate("deflate;q=1.0, gzip;q=0.9"));
+        assertEquals(GZIP, negotiate("gzip;q=1, br;q=0.5"));
+        assertEquals(GZIP, negotiate("br, gzip;q=0.1"));
+        assertEquals(GZIP, negotiate("x-gzip;q=0.7, deflate;q=0.6"));
+    }
+
+    @Test
+    void wildcardOnlyCoversUnlistedEncodings() {
+        assertEquals(DEFLATE, negotiate("gzip;q=0, *"));
+        assertEquals(GZIP, negotiate("deflate;q=0, *;q=0.3"));
+        assertEquals(DEFLATE, negotiate("gzip;q=0.2, *;q=0.5"));
+        assertNull(negotiate("gzip;q=0, deflate;q=0, *"));
+        assertNull(negotiate("*;q=0"));
+    }
+
+    @Test
+    void returnsNullWithoutAcceptableEncoding() {
+        assertNull(negotiate(null));
+        assertNull(negotiate(""));
+        assertNull(negotiate("identity"));
+        assertNull(negotiate("br, zstd"));
+        assertNull(negotiate("gzip;q=0"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.brendlij.fily.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaSyncServiceTest {
+
+    private static final int BLOCK = 2048;
+
+    @TempDir
+    Path tmp;
+
+    private DeltaSyncService service;
+    private File base;
+    private byte[] baseData;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new DeltaSyncService(tmp.resolve("cache").toString(), 1 << 20, 1 << 20);
+        baseData = new byte[BLOCK * 4 + 100];
+        new Random(42).nextBytes(baseData);
+        base = tmp.resolve("base.bin").toFile();
+        Files.write(base.toPath(), baseData);
+    }
+
+    @Test
+    void signatureDescribesEveryBlock() throws Exception {
+        File signature = service.signature(base, BLOCK);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(signature))) {
+            assertEquals(0x46445331, in.readInt());
+            assertEquals(BLOCK, in.readInt());
+            assertEquals(baseData.length, in.readLong());
+            int blocks = in.readInt();
+            assertEquals(5, blocks);
+            for (int i = 0; i < blocks; i++) {
+                int length = Math.min(BLOCK, baseData.length - i * BLOCK);
+                byte[] block = Arrays.copyOfRange(baseData, i * BLOCK, i * BLOCK + length);
+                assertEquals(DeltaSyncService.weakChecksum(block, length), in.readInt());
+                byte[] md5 = new byte[16];
+                in.readFully(md5);
+                assertArrayEquals(MessageDigest.getInstance("MD5").digest(block), md5);
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void deltaRoundTripRebuildsNewVersion() throws Exception {
+        // neue Version: Block 0-1, eingefügte Bytes, Block 3-4
+        byte[] literal = "neue Daten".getBytes();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(baseData, 0, 2 * BLOCK);
+        expected.write(literal);
+        expected.write(baseData, 3 * BLOCK, baseData.length - 3 * BLOCK);
+
+        Delta delta = new Delta().block(0, 2).literal(literal).block(3, 2).end(sha256(expected.toByteArray()));
+        long size = service.applyDelta(base, delta.stream());
+
+        assertEquals(expected.size(), size);
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(base.toPath()));
+        assertNoTempFiles();
+    }
+
+    @Test
+    void wrongChecksumIsRejectedAndBaseKept() throws Exception {
+        Delta delta = new Delta().block(0, 5).end(new byte[32]);
+        assertThrows(DeltaSyncService.DeltaException.class, () -> service.applyDelta(base, delta.stream()));
+        assertArrayEquals(baseData, Files.readAllBytes(base.toPath()));
+        assertNoTempFiles();
+    }
+
+    @Test
+    void blockReferenceOutsideFileIsRejected() throws Exception {
+        Delta delta = new Delta().block(4, 2).end(new byte[32]);
+        assertThrows(DeltaSyncService.DeltaException.class, () -> service.applyDelta(base, delta.stream()));
+        assertArrayEquals(baseData, Files.readAllBytes(base.toPath()));
+        assertNoTempFiles();
+    }
+
+    @Test
+    void repeatedBlockReferencesStopAtMaxFileSize() throws Exception {
+        // 1 MiB Grenze, Basis ~8 KiB: 200 Verweise auf die ganze Datei wären ~1,6 MiB
+        Delta delta = new Delta();
+        for (int i = 0; i < 200; i++) delta.block(0, 5);
+        delta.end(new byte[32]);
+        DeltaSyncService.DeltaException e = assertThrows(DeltaSyncService.DeltaException.class,
+                () -> service.applyDelta(base, delta.stream()));
+        assertTrue(e.getMessage().contains("größer"));
+        assertNoTempFiles();
+    }
+
+    private void assertNoTempFiles() throws IOException {
+        try (var files = Files.list(tmp)) {
+            assertTrue(files.noneMatch(p -> p.getFileName().toString().startsWith(".fily-delta-")));
+        }
+    }
+
+    private static byte[] sha256(byte[] data) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(data);
+    }
+
+    private static final class Delta {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Delta() throws IOException {
+            out.writeInt(0x46444431);
+            out.writeInt(BLOCK);
+        }
+
+        Delta block(int first, int count) throws IOException {
+            out.write('B');
+            out.writeInt(first);
+            out.writeInt(count);
+            return this;
+        }
+
+        Delta literal(byte[] data) throws IOException {
+            out.write('L');
+            out.writeInt(data.length);
+            out.write(data);
+            return this;
+        }
+
+        Delta end(byte[] sha256) throws IOException {
+            out.write('E');
+            out.write(sha256);
+            return this;
+        }
+
+        InputStream stream() {
+            return new ByteArrayInputStream(bytes.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.brendlij.fily.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+
+    @Test
+    void roundsCapacityToPowerOfTwo() {
+        assertEquals(2, new MpscRingBuffer<String>(2).capacity());
+        assertEquals(8, new MpscRingBuffer<String>(5).capacity());
+        assertEquals(1024, new MpscRingBuffer<String>(1024).capacity());
+    }
+
+    @Test
+    void dropsNewestWhenFull() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(i);
+        }
+        assertEquals(2, buffer.dropped());
+        assertEquals(4, buffer.size());
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(4, buffer.drain(out, 100));
+        // Die ältesten Einträge bleiben erhalten, verworfen wird was nicht mehr passt
+        assertEquals(List.of(0, 1, 2, 3), out);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void drainFreesSlots() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        List<Integer> out = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(round * 4 + i));
+            }
+            assertFalse(buffer.offer(-1));
+            assertEquals(2, buffer.drain(out, 2));
+            assertEquals(2, buffer.drain(out, 100));
+        }
+        assertEquals(5, buffer.dropped());
+        assertEquals(20, out.size());
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(i, out.get(i));
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseNothingUncounted() throws InterruptedException {
+        MpscRingBuffer<Long> buffer = new MpscRingBuffer<>(256);
+        int producers = 4;
+        int perProducer = 50_000;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+        AtomicLong accepted = new AtomicLong();
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        if (buffer.offer(base + i)) accepted.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+
+        List<Long> out = new ArrayList<>();
+        start.countDown();
+        while (done.getCount() > 0) {
+            buffer.drain(out, 64);
+        }
+        while (buffer.size() > 0) {
+            buffer.drain(out, 64);
+        }
+
+        assertEquals(accepted.get(), out.size());
+        assertEquals((long) producers * perProducer, out.size() + buffer.dropped());
+        assertEquals(out.size(), out.stream().distinct().count());
+    }
+}
@@ -0,0 +1,172 @@
+package com.brendlij.fily.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathLockManagerTest {
+
+    @TempDir
+    Path tmp;
+
+    private File a;
+    private File b;
+
+    @BeforeEach
+    void setUp() {
+        a = tmp.resolve("anna/a.txt").toFile();
+        b = tmp.resolve("anna/b.txt").toFile();
+    }
+
+    private PathLockManager locks(long timeoutMillis) {
+        PathLockManager locks = new PathLockManager(1024, timeoutMillis);
+        ReflectionTestUtils.setField(locks, "baseDir", tmp.toString());
+        return locks;
+    }
+
+    @Test
+    void oppositeOrderDoesNotDeadlock() throws InterruptedException {
+        PathLockManager locks = locks(5000);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread first = worker(locks, failure, a, b);
+        Thread second = worker(locks, failure, b, a);
+        first.start();
+        second.start();
+        first.join(10000);
+        second.join(10000);
+
+        assertFalse(first.isAlive() || second.isAlive(), "Deadlock");
+        assertNull(failure.get());
+        assertEquals(2000L, locks.stats().get("acquisitions"));
+        assertEquals(0L, locks.stats().get("timeouts"));
+    }
+
+    private static Thread worker(PathLockManager locks, AtomicReference<Throwable> failure, File... files) {
+        return new Thread(() -> {
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    try (PathLockManager.Handle lock = locks.lockForWrite(files)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+    }
+
+    @Test
+    void timeoutRaisesLockTimeoutException() throws InterruptedException {
+        PathLockManager locks = locks(100);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = hold(locks, a, release);
+
+        long start = System.nanoTime();
+        assertThrows(PathLockManager.LockTimeoutException.class, () -> locks.lockForWrite(a));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+        assertEquals(1L, locks.stats().get("timeouts"));
+
+        release.countDown();
+        holder.join();
+        // Nach der Freigabe klappt es wieder, und nichts bleibt vom Fehlversuch gesperrt
+        assertDoesNotThrow(() -> locks.lockForWrite(a, b).close());
+    }
+
+    @Test
+    void writeOnFolderBlocksChangesInside() throws InterruptedException {
+        PathLockManager locks = locks(100);
+        File folder = tmp.resolve("anna").toFile();
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = hold(locks, folder, release);
+
+        // Änderungen im Ordner brauchen eine Lesesperre auf den Ordner
+        assertThrows(PathLockManager.LockTimeoutException.class, () -> locks.lockForWrite(a));
+
+        release.countDown();
+        holder.join();
+    }
+
+    @Test
+    void siblingsDoNotBlockEachOther() throws InterruptedException {
+        PathLockManager locks = locks(100);
+        File sibling = siblingOnOtherStripe(locks);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = hold(locks, a, release);
+
+        // Beide halten nur Lesesperren auf den gemeinsamen Elternordner
+        assertDoesNotThrow(() -> locks.lockForWrite(sibling).close());
+
+        release.countDown();
+        holder.join();
+    }
+
+    @Test
+    void recordsContention() throws InterruptedException {
+        PathLockManager locks = locks(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = hold(locks, a, release);
+
+        Thread releaser = new Thread(() -> {
+            sleep(50);
+            release.countDown();
+        });
+        releaser.start();
+        locks.lockForWrite(a).close();
+        holder.join();
+        releaser.join();
+
+        Map<String, Object> stats = locks.stats();
+        assertEquals(2L, stats.get("acquisitions"));
+        assertEquals(1L, stats.get("contended"));
+        assertTrue((Long) stats.get("maxWaitMicros") >= 10_000);
+        assertTrue((Long) stats.get("avgWaitMicros") > 0);
+    }
+
+    // Geschwister von a, dessen Stripe mit keinem Stripe von a (Datei und Elternordner) zusammenfällt
+    private File siblingOnOtherStripe(PathLockManager locks) {
+        Set<Integer> taken = new HashSet<>();
+        for (Path p = a.toPath(); p != null && p.startsWith(tmp); p = p.getParent()) {
+            taken.add(locks.stripe(p));
+        }
+        for (int i = 0; ; i++) {
+            File candidate = tmp.resolve("anna/b-" + i + ".txt").toFile();
+            if (!taken.contains(locks.stripe(candidate.toPath()))) return candidate;
+        }
+    }
+
+    // Hält eine Schreibsperre auf file in einem anderen Thread, bis release auslöst
+    private static Thread hold(PathLockManager locks, File file, CountDownLatch release) throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (PathLockManager.Handle lock = locks.lockForWrite(file)) {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        return holder;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.brendlij.fily.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShareLinkServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private ShareLinkService service;
+
+    @BeforeEach
+    void setUp() {
+        service = service("geheim");
+    }
+
+    private ShareLinkService service(String secret) {
+        ShareLinkService service = new ShareLinkService(secret);
+        ReflectionTestUtils.setField(service, "baseDir", tmp.toString());
+        return service;
+    }
+
+    private static long inOneHour() {
+        return System.currentTimeMillis() / 1000 + 3600;
+    }
+
+    @Test
+    void verifiesOwnTokens() {
+        String token = service.createToken("anna", "docs/bericht.pdf", inOneHour(), 3);
+
+        ShareLinkService.ShareLink link = service.verify(token);
+
+        assertNotNull(link);
+        assertEquals("anna", link.username());
+        assertEquals("docs/bericht.pdf", link.path());
+        assertEquals(3, link.maxDownloads());
+        assertTrue(link.isLimited());
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        String token = service.createToken("anna", "docs/bericht.pdf", inOneHour(), 0);
+        int dot = token.indexOf('.');
+        String payload = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+
+        // Anderer Benutzer, alte Signatur
+        String forged = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.replace("\nanna\n", "\nbob\n").getBytes(StandardCharsets.UTF_8));
+        assertNull(service.verify(forged + token.substring(dot)));
+
+        // Signatur verändert (erstes Zeichen: alle 6 Bit zählen, anders als beim letzten)
+        char first = token.charAt(dot + 1);
+        assertNull(service.verify(token.substring(0, dot + 1) + (first == 'A' ? 'B' : 'A') + token.substring(dot + 2)));
+
+        // Mit anderem Schlüssel signiert, kaputt oder ohne Signatur
+        assertNull(service.verify(service("anderes-geheimnis").createToken("anna", "x", inOneHour(), 0)));
+        assertNull(service.verify("kein-token"));
+        assertNull(service.verify("%%%.%%%"));
+        assertNull(service.verify(token.substring(0, dot)));
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        String token = service.createToken("anna", "a.txt", System.currentTimeMillis() / 1000 - 1, 0);
+        assertNull(service.verify(token));
+    }
+
+    @Test
+    void enforcesDownloadLimit() {
+        ShareLinkService.ShareLink limited = service.verify(service.createToken("anna", "a.txt", inOneHour(), 2));
+        assertTrue(service.tryConsumeDownload(limited));
+        assertTrue(service.tryConsumeDownload(limited));
+        assertFalse(service.tryConsumeDownload(limited));
+
+        // Ein neuer Link zählt getrennt, unbegrenzte Links zählen gar nicht
+        ShareLinkService.ShareLink other = service.verify(service.createToken("anna", "a.txt", inOneHour(), 1));
+        assertTrue(service.tryConsumeDownload(other));
+        ShareLinkService.ShareLink unlimited = service.verify(service.createToken("anna", "a.txt", inOneHour(), 0));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(service.tryConsumeDownload(unlimited));
+        }
+    }
+
+    @Test
+    void resolvesOnlyInsideSharedPath() {
+        ShareLinkService.ShareLink folder = service.verify(service.createToken("anna", "docs", inOneHour(), 0));
+
+        File file = service.resolve(folder, "unter/a.txt");
+        assertEquals(tmp.resolve("anna/docs/unter/a.txt").toFile().getAbsoluteFile(), file.getAbsoluteFile());
+        assertEquals(tmp.resolve("anna/docs").toFile().getAbsoluteFile(), service.resolve(folder, null).getAbsoluteFile());
+
+        assertThrows(IllegalArgumentException.class, () -> service.resolve(folder, "../privat.txt"));
+        assertThrows(IllegalArgumentException.class, () -> service.resolve(folder, "unter/../../privat.txt"));
+        assertThrows(IllegalArgumentException.class, () -> service.resolve(folder, ".fily-upload-1.tmp"));
+
+        ShareLinkService.ShareLink escaping = service.verify(service.createToken("anna", "../bob", inOneHour(), 0));
+        assertThrows(IllegalArgumentException.class, () -> service.resolve(escaping, null));
+    }
+}
@@ -0,0 +1,182 @@
+package com.brendlij.fily.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredStorageServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private Path root;
+    private Path indexFile;
+    private PathLockManager locks;
+    private File file;
+    private byte[] content;
+    private long mtime;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = tmp.resolve("files");
+        indexFile = tmp.resolve("tier-index.bin");
+        locks = new PathLockManager(16, 1000);
+        ReflectionTestUtils.setField(locks, "baseDir", root.toString());
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("2024-01-01 12:00:00 INFO Zeile ").append(i).append(" ohne besondere Vorkommnisse\n");
+        }
+        content = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Path path = root.resolve("anna/logs/server.log");
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+        mtime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10);
+        makeCold(path);
+        file = path.toFile();
+    }
+
+    // mtime und atime zurücksetzen, sonst gilt die gerade geschriebene Datei als benutzt
+    private void makeCold(Path path) throws IOException {
+        FileTime old = FileTime.fromMillis(mtime);
+        Files.getFileAttributeView(path, BasicFileAttributeView.class).setTimes(old, old, null);
+    }
+
+    private TieredStorageService service() {
+        TieredStorageService service = new TieredStorageService(locks, new FileWatchService(event -> { }, false),
+                true, indexFile.toString(), 1, 1024);
+        ReflectionTestUtils.setField(service, "baseDir", root.toString());
+        return service;
+    }
+
+    private static byte[] read(TieredStorageService service, File file) throws IOException {
+        try (InputStream in = service.openLogical(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void compressesColdFilesInPlace() throws IOException {
+        TieredStorageService service = service();
+        service.compressColdFiles();
+
+        TieredStorageService.TierEntry entry = service.compressed(file);
+        assertNotNull(entry);
+        assertTrue(TieredStorageService.isTierFile(file));
+        assertTrue(file.length() < content.length);
+        assertEquals(content.length, service.logicalSize(file));
+        assertEquals(file.lastModified(), entry.lastModified());
+        assertArrayEquals(content, read(service, file));
+        assertTrue(Files.exists(indexFile));
+    }
+
+    @Test
+    void skipsIncompressibleAndRecentFiles() throws IOException {
+        byte[] random = new byte[64 * 1024];
+        new Random(7).nextBytes(random);
+        Path noise = root.resolve("anna/rauschen.txt");
+        Files.write(noise, random);
+        makeCold(noise);
+        Path fresh = root.resolve("anna/neu.log");
+        Files.write(fresh, content);
+
+        TieredStorageService service = service();
+        service.compressColdFiles();
+
+        assertNull(service.compressed(noise.toFile()));
+        assertArrayEquals(random, Files.readAllBytes(noise));
+        assertNull(service.compressed(fresh.toFile()));
+    }
+
+    @Test
+    void touchKeepsEntryButReplacementDropsIt() throws IOException {
+        TieredStorageService service = service();
+        service.compressColdFiles();
+
+        // Nur die mtime ändert sich: Datei ist weiterhin unsere gzip-Datei
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(mtime + 5000));
+        assertNotNull(service.compressed(file));
+        assertArrayEquals(content, read(service, file));
+
+        // Gleich große, aber fremde Datei: Eintrag wird verworfen und roh ausgeliefert
+        byte[] other = new byte[(int) file.length()];
+        java.util.Arrays.fill(other, (byte) 'x');
+        Files.write(file.toPath(), other);
+        assertNull(service.compressed(file));
+        assertEquals(other.length, service.logicalSize(file));
+        assertArrayEquals(other, read(service, file));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void readersDuringSwapKeepEntry() throws IOException {
+        TieredStorageService service = service();
+        service.compressColdFiles();
+        byte[] stored = Files.readAllBytes(file.toPath());
+        Set<String> swapping = (Set<String>) ReflectionTestUtils.getField(service, "swapping");
+
+        // Zustand zwischen Indexeintrag und Tausch: noch die rohe Datei auf der Platte
+        swapping.add(file.getAbsolutePath());
+        Files.write(file.toPath(), content);
+        assertNull(service.compressed(file));
+        assertArrayEquals(content, read(service, file));
+
+        Files.write(file.toPath(), stored);
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(mtime));
+        swapping.remove(file.getAbsolutePath());
+        assertNotNull(service.compressed(file));
+        assertArrayEquals(content, read(service, file));
+    }
+
+    @Test
+    void rehydrateRestoresOriginal() throws IOException {
+        TieredStorageService service = service();
+        service.compressColdFiles();
+        service.rehydrate(file);
+
+        assertNull(service.compressed(file));
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(mtime, file.lastModified(), 1000);
+    }
+
+    @Test
+    void recoversMissingIndexFromFiles() throws IOException {
+        service().compressColdFiles();
+        Files.delete(indexFile);
+
+        TieredStorageService restarted = service();
+        assertNull(restarted.compressed(file));
+        restarted.recover();
+
+        TieredStorageService.TierEntry entry = restarted.compressed(file);
+        assertNotNull(entry);
+        assertEquals(content.length, entry.logicalSize());
+        assertArrayEquals(content, read(restarted, file));
+        assertTrue(Files.exists(indexFile));
+    }
+
+    @Test
+    void recoversUnreadableIndex() throws IOException {
+        service().compressColdFiles();
+        Files.write(indexFile, new byte[]{1, 2, 3});
+
+        TieredStorageService restarted = service();
+        restarted.recover();
+        assertEquals(content.length, restarted.logicalSize(file));
+    }
+}